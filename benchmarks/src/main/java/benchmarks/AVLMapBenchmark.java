@@ -0,0 +1,78 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLMap;
+import trees.AVLTree;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/* Counting keys, the typical ordered-map update: "size" keys drawn
+   Zipf-distributed, so most updates hit keys that are already there. treePlusHashMap is the old way of an AVLTree for the order and a
+   HashMap for the values; java.util.TreeMap is there for reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AVLMapBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+    private int idx;
+    private AVLMap<Integer, Integer> avlMap;
+    private AVLTree<Integer> tree;
+    private HashMap<Integer, Integer> values;
+    private TreeMap<Integer, Integer> treeMap;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        keys = KeyDistribution.boxed(KeyDistribution.ZIPFIAN.keys(size, SEED));
+        avlMap = new AVLMap<>();
+        tree = new AVLTree<>();
+        values = new HashMap<>();
+        treeMap = new TreeMap<>();
+        for (Integer key : keys) {
+            avlMap.merge(key, 1, Integer::sum);
+            tree.insert(key);
+            values.merge(key, 1, Integer::sum);
+            treeMap.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private Integer nextKey() {
+        Integer key = keys[idx];
+        idx = (idx + 1 == keys.length) ? 0 : idx + 1;
+        return key;
+    }
+
+    @Benchmark
+    public Integer avlMap() {
+        return avlMap.merge(nextKey(), 1, Integer::sum);
+    }
+
+    @Benchmark
+    public Integer treePlusHashMap() {
+        Integer key = nextKey();
+        if (tree.find(key) == null) {
+            tree.insert(key);
+        }
+        return values.merge(key, 1, Integer::sum);
+    }
+
+    @Benchmark
+    public Integer treeMap() {
+        return treeMap.merge(nextKey(), 1, Integer::sum);
+    }
+
+    @Benchmark
+    public Integer get() {
+        return avlMap.get(nextKey());
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.BufferedAVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* Ingest of "size" keys into an empty tree, ending with size() so the
+   buffered tree has applied every write. Each invocation starts from a
+   fresh tree.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BufferedInsertBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"SEQUENTIAL", "RANDOM"})
+    public KeyDistribution distribution;
+
+    @Param({"1000000"})
+    public int size;
+
+    private Integer[] keys;
+    private AVLTree<Integer> avl;
+    private BufferedAVLTree<Integer> buffered;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = KeyDistribution.boxed(distribution.keys(size, SEED));
+    }
+
+    @Setup(Level.Invocation)
+    public void create() {
+        avl = new AVLTree<>();
+        buffered = new BufferedAVLTree<>();
+    }
+
+    @Benchmark
+    public int avl() {
+        for (Integer key : keys) {
+            avl.insert(key);
+        }
+        return avl.size();
+    }
+
+    @Benchmark
+    public int buffered() {
+        for (Integer key : keys) {
+            buffered.insert(key);
+        }
+        return buffered.size();
+    }
+}
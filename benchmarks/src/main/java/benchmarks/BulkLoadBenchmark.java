@@ -0,0 +1,108 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/* Building an AVLTree from sorted keys: one insert per key against
+   buildFromSorted, and a sorted batch added with insert against
+   insertAllSorted. For unsorted keys, Arrays.sort plus buildFromSorted
+   against parallelBuild. Scores are per whole build.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    private Integer[] sorted;
+    // every other key, the tree the batch is merged into holds the rest
+    private Integer[] evens;
+    private Integer[] odds;
+    private Integer[] shuffled;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sorted = KeyDistribution.boxed(KeyDistribution.SEQUENTIAL.keys(size, 0));
+        evens = new Integer[(size + 1) / 2];
+        odds = new Integer[size / 2];
+        for (int i = 0; i < size; i++) {
+            if (i % 2 == 0) {
+                evens[i / 2] = sorted[i];
+            }
+            else {
+                odds[i / 2] = sorted[i];
+            }
+        }
+        shuffled = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, 0));
+    }
+
+    @State(Scope.Thread)
+    public static class HalfTree {
+        AVLTree<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void fill(BulkLoadBenchmark outer) {
+            tree = new AVLTree<>();
+            tree.buildFromSorted(outer.evens);
+        }
+    }
+
+    @Benchmark
+    public AVLTree<Integer> insertEach() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : sorted) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> buildFromSorted() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.buildFromSorted(sorted);
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mergeInsertEach(HalfTree half) {
+        for (Integer key : odds) {
+            half.tree.insert(key);
+        }
+        return half.tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mergeInsertAllSorted(HalfTree half) {
+        half.tree.insertAllSorted(Arrays.asList(odds).iterator());
+        return half.tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> sortThenBuildFromSorted() {
+        Integer[] keys = shuffled.clone();
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (distinct == 0 || !keys[distinct - 1].equals(keys[i])) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.buildFromSorted(Arrays.copyOf(keys, distinct));
+        return tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelBuild() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.parallelBuild(shuffled);
+        return tree;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLCache;
+
+import java.util.concurrent.TimeUnit;
+
+/* Read-through use of AVLCache: get, and put on a miss. Requests are
+   Zipf-distributed over "keySpace" keys; with scan = true every other
+   request comes from a sequential scan over the key space, which an LRU
+   lets flush out the hot keys. The hit ratio is hits / (hits + misses)
+   of the Requests counters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CacheBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"LRU", "LFU", "W_TINY_LFU"})
+    public AVLCache.Policy policy;
+
+    @Param({"false", "true"})
+    public boolean scan;
+
+    @Param({"1000000"})
+    public int keySpace;
+
+    @Param({"10000"})
+    public int capacity;
+
+    private Integer[] requests;
+    private int idx;
+    private AVLCache<Integer, Integer> cache;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int[] keys = KeyDistribution.ZIPFIAN.keys(keySpace, SEED);
+        if (scan) {
+            for (int i = 1; i < keys.length; i += 2) {
+                keys[i] = i;
+            }
+        }
+        requests = KeyDistribution.boxed(keys);
+        cache = new AVLCache<>(capacity, policy);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Requests {
+        public long hits;
+        public long misses;
+    }
+
+    @Benchmark
+    public Integer getOrLoad(Requests counters) {
+        Integer key = requests[idx];
+        idx = (idx + 1 == requests.length) ? 0 : idx + 1;
+        Integer value = cache.get(key);
+        if (value != null) {
+            counters.hits++;
+            return value;
+        }
+        counters.misses++;
+        cache.put(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import trees.AVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* find and insert on an AVLTree of Integer keys in natural order, with
+   and without other key types having been used first. With polluted =
+   true the setup runs String, Long, Double and comparator-ordered trees
+   through the same code, so any call site in BSTree.compareKeys that
+   dispatches on the key class sees several receivers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CompareKeysBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"false", "true"})
+    public boolean polluted;
+
+    // 1000 keys stay in cache, so the comparisons dominate
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] lookups;
+    private AVLTree<Integer> tree;
+    private int lookupIdx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int[] rawKeys = KeyDistribution.RANDOM.keys(size, SEED);
+        keys = KeyDistribution.boxed(rawKeys);
+        lookups = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED + 1));
+        if (polluted) {
+            pollute(rawKeys);
+        }
+        tree = new AVLTree<>();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+    }
+
+    private static void pollute(int[] rawKeys) {
+        AVLTree<String> strings = new AVLTree<>();
+        AVLTree<Long> longs = new AVLTree<>();
+        AVLTree<Double> doubles = new AVLTree<>();
+        AVLTree<Integer> reversed = new AVLTree<>((a, b) -> Integer.compare(b, a));
+        for (int round = 0; round < 10; round++) {
+            for (int key : rawKeys) {
+                strings.insert(Integer.toString(key));
+                longs.insert((long) key);
+                doubles.insert((double) key);
+                reversed.insert(key);
+            }
+            for (int key : rawKeys) {
+                strings.delete(Integer.toString(key));
+                longs.delete((long) key);
+                doubles.delete((double) key);
+                reversed.delete(key);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean find() {
+        Integer key = lookups[lookupIdx];
+        lookupIdx = (lookupIdx + 1 == lookups.length) ? 0 : lookupIdx + 1;
+        return tree.find(key) != null;
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyTree {
+        AVLTree<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void create() {
+            tree = new AVLTree<>();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void insert(EmptyTree state, Blackhole bh) {
+        for (Integer key : keys) {
+            bh.consume(state.tree.insert(key));
+        }
+    }
+}
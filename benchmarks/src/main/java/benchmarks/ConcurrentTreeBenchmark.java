@@ -0,0 +1,156 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.ConcurrentAVLTree;
+import trees.ShardedAVLTree;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Mixed find / insert / delete throughput on one shared tree.
+   readPercent of the operations are lookups, the rest is split evenly
+   between inserts and deletes, so the tree stays at about half of the
+   key range. Run with -t to vary the number of threads, e.g.
+
+       java -jar benchmarks/target/benchmarks.jar ConcurrentTreeBenchmark -t 32
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ConcurrentTreeBenchmark {
+    public enum Impl {
+        CONCURRENT_AVL {
+            @Override
+            TreeImpl.OrderedSet create() {
+                ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+                return new TreeImpl.OrderedSet() {
+                    @Override
+                    public boolean insert(Integer key) {
+                        return tree.insert(key);
+                    }
+
+                    @Override
+                    public boolean contains(Integer key) {
+                        return tree.contains(key);
+                    }
+
+                    @Override
+                    public boolean delete(Integer key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        },
+        SKIP_LIST {
+            @Override
+            TreeImpl.OrderedSet create() {
+                ConcurrentSkipListMap<Integer, Boolean> map = new ConcurrentSkipListMap<>();
+                return new TreeImpl.OrderedSet() {
+                    @Override
+                    public boolean insert(Integer key) {
+                        return map.putIfAbsent(key, Boolean.TRUE) == null;
+                    }
+
+                    @Override
+                    public boolean contains(Integer key) {
+                        return map.containsKey(key);
+                    }
+
+                    @Override
+                    public boolean delete(Integer key) {
+                        return map.remove(key) != null;
+                    }
+                };
+            }
+        },
+        SHARDED_AVL {
+            @Override
+            TreeImpl.OrderedSet create() {
+                ShardedAVLTree<Integer> tree = new ShardedAVLTree<>();
+                return new TreeImpl.OrderedSet() {
+                    @Override
+                    public boolean insert(Integer key) {
+                        return tree.insert(key);
+                    }
+
+                    @Override
+                    public boolean contains(Integer key) {
+                        return tree.contains(key);
+                    }
+
+                    @Override
+                    public boolean delete(Integer key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        },
+        // What we did before: one AVLTree behind a global monitor
+        SYNCHRONIZED_AVL {
+            @Override
+            TreeImpl.OrderedSet create() {
+                AVLTree<Integer> tree = new AVLTree<>();
+                return new TreeImpl.OrderedSet() {
+                    @Override
+                    public synchronized boolean insert(Integer key) {
+                        return tree.insert(key);
+                    }
+
+                    @Override
+                    public synchronized boolean contains(Integer key) {
+                        return tree.find(key) != null;
+                    }
+
+                    @Override
+                    public synchronized boolean delete(Integer key) {
+                        return tree.delete(key);
+                    }
+                };
+            }
+        };
+
+        abstract TreeImpl.OrderedSet create();
+    }
+
+    @Param({"CONCURRENT_AVL", "SHARDED_AVL", "SKIP_LIST", "SYNCHRONIZED_AVL"})
+    public Impl impl;
+
+    @Param({"90", "50"})
+    public int readPercent;
+
+    @Param({"1000000"})
+    public int keyRange;
+
+    private TreeImpl.OrderedSet set;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        set = impl.create();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < keyRange / 2; i++) {
+            set.insert(random.nextInt(keyRange));
+        }
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = random.nextInt(keyRange);
+        int op = random.nextInt(100);
+        if (op < readPercent) {
+            return set.contains(key);
+        }
+        else if (((op - readPercent) & 1) == 0) {
+            return set.insert(key);
+        }
+        else {
+            return set.delete(key);
+        }
+    }
+}
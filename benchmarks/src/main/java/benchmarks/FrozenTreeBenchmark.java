@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.FrozenIntTree;
+import trees.FrozenTree;
+import trees.IntAVLTree;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/* Lookup latency of a frozen (Eytzinger) copy against the mutable tree
+   it was built from, for boxed and for int keys, with a binary search
+   over the sorted int array as the baseline. Lookups are random keys
+   from the tree, so at the bigger sizes most of them miss the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FrozenTreeBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"100000", "10000000"})
+    public int size;
+
+    private int[] lookups;
+    private Integer[] boxedLookups;
+    private int lookupIdx;
+
+    private AVLTree<Integer> avl;
+    private FrozenTree<Integer> frozen;
+    private IntAVLTree intAvl;
+    private FrozenIntTree frozenInt;
+    private int[] sorted;
+
+    @Setup(Level.Trial)
+    public void build() {
+        int[] keys = KeyDistribution.RANDOM.keys(size, SEED);
+        avl = new AVLTree<>();
+        intAvl = new IntAVLTree(size);
+        for (int key : keys) {
+            avl.insert(key);
+            intAvl.insert(key);
+        }
+        frozen = avl.freeze();
+        frozenInt = intAvl.freeze();
+        sorted = intAvl.toArray();
+
+        lookups = KeyDistribution.RANDOM.keys(size, SEED + 1);
+        boxedLookups = KeyDistribution.boxed(lookups);
+    }
+
+    private int nextLookup() {
+        int idx = lookupIdx;
+        lookupIdx = (idx + 1 == lookups.length) ? 0 : idx + 1;
+        return idx;
+    }
+
+    @Benchmark
+    public boolean avl() {
+        return avl.find(boxedLookups[nextLookup()]) != null;
+    }
+
+    @Benchmark
+    public boolean frozen() {
+        return frozen.contains(boxedLookups[nextLookup()]);
+    }
+
+    @Benchmark
+    public boolean intAvl() {
+        return intAvl.contains(lookups[nextLookup()]);
+    }
+
+    @Benchmark
+    public boolean frozenInt() {
+        return frozenInt.contains(lookups[nextLookup()]);
+    }
+
+    @Benchmark
+    public boolean binarySearch() {
+        return Arrays.binarySearch(sorted, lookups[nextLookup()]) >= 0;
+    }
+}
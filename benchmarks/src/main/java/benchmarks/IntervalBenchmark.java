@@ -0,0 +1,110 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import trees.AVLTree;
+import trees.IntervalTree;
+import trees.IntervalTree.Interval;
+import trees.SegmentTree;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Stabbing queries ("which intervals contain x") over "size" short
+   intervals spread over [0, 10 * size): the IntervalTree against the
+   old way of scanning an AVLTree of the intervals in order of their
+   start up to x. Also range sums of a SegmentTree against summing the
+   array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class IntervalBenchmark {
+    private static final long SEED = 42;
+    private static final int QUERIES = 1 << 12;
+    private static final int MAX_LENGTH = 100;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private IntervalTree<Integer> intervalTree;
+    private AVLTree<Interval<Integer>> startTree;
+    private long[] values;
+    private SegmentTree segmentTree;
+    private Integer[] points;
+    private int[] froms;
+    private int[] tos;
+    private int idx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(SEED);
+        int[] starts = KeyDistribution.RANDOM.keys(size, SEED);
+        intervalTree = new IntervalTree<>();
+        startTree = new AVLTree<>();
+        values = new long[size];
+        for (int i = 0; i < size; i++) {
+            int start = 10 * starts[i];
+            Interval<Integer> interval = new Interval<>(start, start + random.nextInt(MAX_LENGTH));
+            intervalTree.insert(interval);
+            startTree.insert(interval);
+            values[i] = random.nextInt();
+        }
+        segmentTree = new SegmentTree(values);
+
+        points = new Integer[QUERIES];
+        froms = new int[QUERIES];
+        tos = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            points[i] = random.nextInt(10 * size);
+            froms[i] = random.nextInt(size);
+            tos[i] = froms[i] + random.nextInt(size - froms[i] + 1);
+        }
+    }
+
+    private int next() {
+        int i = idx;
+        idx = (idx + 1) & (QUERIES - 1);
+        return i;
+    }
+
+    @Benchmark
+    public void intervalTreeStab(Blackhole bh) {
+        Integer point = points[next()];
+        intervalTree.forEachOverlapping(point, point, bh::consume);
+    }
+
+    @Benchmark
+    public void startTreeScan(Blackhole bh) {
+        Integer point = points[next()];
+        for (Iterator<Interval<Integer>> it = startTree.iterator(); it.hasNext(); ) {
+            Interval<Integer> interval = it.next();
+            if (interval.getStart() > point) {
+                break;
+            }
+            if (interval.getEnd() >= point) {
+                bh.consume(interval);
+            }
+        }
+    }
+
+    @Benchmark
+    public long segmentTreeSum() {
+        int i = next();
+        return segmentTree.sum(froms[i], tos[i]);
+    }
+
+    @Benchmark
+    public long arraySum() {
+        int i = next();
+        long sum = 0;
+        for (int j = froms[i]; j < tos[i]; j++) {
+            sum += values[j];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,113 @@
+package benchmarks;
+
+import java.util.Random;
+
+/* Key streams used by the tree benchmarks. All of them are deterministic
+   for a given seed, so every fork of a benchmark sees the same keys.
+ */
+public enum KeyDistribution {
+    // 0, 1, 2, ... -- the worst case for an unbalanced BSTree and the
+    // case that makes AVLTree rotate on almost every insert
+    SEQUENTIAL {
+        @Override
+        public int[] keys(int count, long seed) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i;
+            }
+            return keys;
+        }
+    },
+    // A random permutation of 0 .. count-1, so there are no duplicates
+    RANDOM {
+        @Override
+        public int[] keys(int count, long seed) {
+            int[] keys = SEQUENTIAL.keys(count, seed);
+            Random random = new Random(seed);
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+            return keys;
+        }
+    },
+    // Skewed draws from 0 .. count-1: a few hot keys get most of the
+    // traffic. Hot keys are scattered over the key space, so they do not
+    // all end up in the same subtree.
+    ZIPFIAN {
+        @Override
+        public int[] keys(int count, long seed) {
+            ZipfianGenerator generator = new ZipfianGenerator(count, ZIPFIAN_CONSTANT, seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = scramble(generator.next(), count);
+            }
+            return keys;
+        }
+    };
+
+    public static final double ZIPFIAN_CONSTANT = 0.99;
+
+    public abstract int[] keys(int count, long seed);
+
+    public static Integer[] boxed(int[] keys) {
+        // Boxing up front, so that the benchmarks do not measure Integer.valueOf
+        Integer[] boxed = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            boxed[i] = keys[i];
+        }
+        return boxed;
+    }
+
+    private static int scramble(long rank, int count) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) Math.floorMod(h, (long) count);
+    }
+
+    /* Zipfian generator from Gray et al., "Quickly Generating Billion-Record
+       Synthetic Databases" (the same one YCSB uses). Rank 0 is the most
+       popular item.
+     */
+    static final class ZipfianGenerator {
+        private final long items;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+        private final Random random;
+
+        ZipfianGenerator(long items, double theta, long seed) {
+            this.items = items;
+            this.theta = theta;
+            this.zetan = zeta(items, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+            this.random = new Random(seed);
+        }
+
+        long next() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.BSTree;
+import trees.RedBlackTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* Steady-state churn: every operation deletes a key and inserts it
+   again, so the tree keeps "size" keys. With pooled = true the deleted
+   node is reused by the insert; gc.alloc.rate.norm (BenchmarkRunner adds
+   the GC profiler) should then be 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class NodePoolBenchmark {
+    private static final long SEED = 42;
+    private static final int POOL_SIZE = 1024;
+
+    public enum Impl {
+        BST {
+            @Override
+            BSTree<Integer> create() {
+                return new BSTree<>();
+            }
+        },
+        AVL {
+            @Override
+            BSTree<Integer> create() {
+                return new AVLTree<>();
+            }
+        },
+        RED_BLACK {
+            @Override
+            BSTree<Integer> create() {
+                return new RedBlackTree<>();
+            }
+        };
+
+        abstract BSTree<Integer> create();
+    }
+
+    @Param({"BST", "AVL", "RED_BLACK"})
+    public Impl impl;
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    @Param({"100000"})
+    public int size;
+
+    private Integer[] keys;
+    private BSTree<Integer> tree;
+    private int idx;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        keys = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED));
+        tree = impl.create();
+        if (pooled) {
+            tree.enableNodePool(POOL_SIZE);
+        }
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    public boolean deleteInsert() {
+        Integer key = keys[idx];
+        idx = (idx + 1 == keys.length) ? 0 : idx + 1;
+        tree.delete(key);
+        return tree.insert(key);
+    }
+}
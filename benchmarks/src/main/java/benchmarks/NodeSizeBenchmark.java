@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.LeanAVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* Memory per node: each invocation inserts "size" pre-boxed keys into an
+   empty tree, so the only allocations are the nodes, and
+   gc.alloc.rate.norm (BenchmarkRunner adds the GC profiler) divided by
+   size is the size of a node in bytes. Per-operation latencies of the
+   same trees are in TreeBenchmark (AVL vs LEAN_AVL).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class NodeSizeBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"100000"})
+    public int size;
+
+    private Integer[] keys;
+    private AVLTree<Integer> avl;
+    private LeanAVLTree<Integer> lean;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED));
+    }
+
+    @Setup(Level.Invocation)
+    public void create() {
+        avl = new AVLTree<>();
+        lean = new LeanAVLTree<>();
+    }
+
+    @Benchmark
+    public AVLTree<Integer> avl() {
+        for (Integer key : keys) {
+            avl.insert(key);
+        }
+        return avl;
+    }
+
+    @Benchmark
+    public LeanAVLTree<Integer> lean() {
+        for (Integer key : keys) {
+            lean.insert(key);
+        }
+        return lean;
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import trees.AVLTree;
+import trees.PersistentAVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* Cost of path copying: "size" inserts into an AVLTree, into a
+   PersistentAVLTree one version per insert, and into a PersistentAVLTree
+   in batch mode. Run with the GC profiler (BenchmarkRunner adds it);
+   gc.alloc.rate.norm divided by "size" is the allocation per insert.
+
+   withSnapshots takes a snapshot every "snapshotEvery" inserts in batch
+   mode, so the batch has to copy again the nodes it shares with the
+   snapshot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PersistentTreeBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"100"})
+    public int snapshotEvery;
+
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        keys = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED));
+    }
+
+    @Benchmark
+    public AVLTree<Integer> mutable() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public PersistentAVLTree<Integer> pathCopying() {
+        PersistentAVLTree<Integer> tree = new PersistentAVLTree<>();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public PersistentAVLTree<Integer> batch() {
+        PersistentAVLTree<Integer> tree = new PersistentAVLTree<>();
+        tree.beginBatch();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        tree.endBatch();
+        return tree;
+    }
+
+    @Benchmark
+    public PersistentAVLTree<Integer> withSnapshots(Blackhole bh) {
+        PersistentAVLTree<Integer> tree = new PersistentAVLTree<>();
+        tree.beginBatch();
+        for (int i = 0; i < keys.length; i++) {
+            tree.insert(keys[i]);
+            if (i % snapshotEvery == 0) {
+                bh.consume(tree.snapshot());
+            }
+        }
+        tree.endBatch();
+        return tree;
+    }
+}
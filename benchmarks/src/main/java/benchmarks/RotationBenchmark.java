@@ -0,0 +1,208 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import trees.AVLTree;
+import trees.BSTree;
+import trees.RedBlackTree;
+import trees.SplayTree;
+import trees.Treap;
+import trees.WAVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* The balancing policies on top of BSTree: time for "size" inserts,
+   deletes and skewed finds, and the rotations they do. Every tree is a
+   subclass that counts its LeftRotate/RightRotate calls. The rotations
+   and operations secondary results are totals over all measurement
+   iterations; their ratio is the number of rotations per operation.
+
+   insert and delete use random keys; find draws Zipfian keys from a full
+   tree, where SplayTree keeps the hot keys near the root.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RotationBenchmark {
+    private static final long SEED = 42;
+
+    public enum Impl {
+        AVL {
+            @Override
+            BSTree<Integer> create(RotationCount count) {
+                return new AVLTree<Integer>() {
+                    @Override
+                    protected void LeftRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.LeftRotate(start);
+                    }
+
+                    @Override
+                    protected void RightRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.RightRotate(start);
+                    }
+                };
+            }
+        },
+        RED_BLACK {
+            @Override
+            BSTree<Integer> create(RotationCount count) {
+                return new RedBlackTree<Integer>() {
+                    @Override
+                    protected void LeftRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.LeftRotate(start);
+                    }
+
+                    @Override
+                    protected void RightRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.RightRotate(start);
+                    }
+                };
+            }
+        },
+        WAVL {
+            @Override
+            BSTree<Integer> create(RotationCount count) {
+                return new WAVLTree<Integer>() {
+                    @Override
+                    protected void LeftRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.LeftRotate(start);
+                    }
+
+                    @Override
+                    protected void RightRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.RightRotate(start);
+                    }
+                };
+            }
+        },
+        TREAP {
+            @Override
+            BSTree<Integer> create(RotationCount count) {
+                return new Treap<Integer>() {
+                    @Override
+                    protected void LeftRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.LeftRotate(start);
+                    }
+
+                    @Override
+                    protected void RightRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.RightRotate(start);
+                    }
+                };
+            }
+        },
+        SPLAY {
+            @Override
+            BSTree<Integer> create(RotationCount count) {
+                return new SplayTree<Integer>() {
+                    @Override
+                    protected void LeftRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.LeftRotate(start);
+                    }
+
+                    @Override
+                    protected void RightRotate(Node<Integer> start) {
+                        count.rotations++;
+                        super.RightRotate(start);
+                    }
+                };
+            }
+        };
+
+        abstract BSTree<Integer> create(RotationCount count);
+    }
+
+    static final class RotationCount {
+        long rotations;
+    }
+
+    @Param({"AVL", "RED_BLACK", "WAVL", "TREAP", "SPLAY"})
+    public Impl impl;
+
+    @Param({"100000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] deletes;
+    private Integer[] skewedLookups;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        keys = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED));
+        deletes = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, SEED + 1));
+        skewedLookups = KeyDistribution.boxed(KeyDistribution.ZIPFIAN.keys(size, SEED + 2));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Rotations {
+        public long rotations;
+        public long operations;
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyTree {
+        final RotationCount count = new RotationCount();
+        BSTree<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void create(RotationBenchmark outer) {
+            tree = outer.impl.create(count);
+            count.rotations = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullTree {
+        final RotationCount count = new RotationCount();
+        BSTree<Integer> tree;
+
+        @Setup(Level.Invocation)
+        public void fill(RotationBenchmark outer) {
+            tree = outer.impl.create(count);
+            for (Integer key : outer.keys) {
+                tree.insert(key);
+            }
+            count.rotations = 0;
+        }
+    }
+
+    @Benchmark
+    public void insert(EmptyTree state, Rotations rotations, Blackhole bh) {
+        for (Integer key : keys) {
+            bh.consume(state.tree.insert(key));
+        }
+        rotations.rotations += state.count.rotations;
+        rotations.operations += size;
+    }
+
+    @Benchmark
+    public void delete(FullTree state, Rotations rotations, Blackhole bh) {
+        for (Integer key : deletes) {
+            bh.consume(state.tree.delete(key));
+        }
+        rotations.rotations += state.count.rotations;
+        rotations.operations += size;
+    }
+
+    @Benchmark
+    public void skewedFind(FullTree state, Rotations rotations, Blackhole bh) {
+        for (Integer key : skewedLookups) {
+            bh.consume(state.tree.find(key));
+        }
+        rotations.rotations += state.count.rotations;
+        rotations.operations += size;
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/* Union of a big AVLTree with a smaller one: inserting the keys of the
+   small tree one by one against the join-based union, sequential and
+   fork/join. Half of the keys of the small tree are already in the big
+   one. Scores are per whole union.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SetOperationBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"1000", "1000000"})
+    public int otherSize;
+
+    private Integer[] keys;
+    private Integer[] otherKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // even numbers, and an odd stride over the same range for the other
+        // tree, so about half of its keys are even
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = 2 * i;
+        }
+        otherKeys = new Integer[otherSize];
+        long step = (2L * size / otherSize) | 1;
+        for (int i = 0; i < otherSize; i++) {
+            otherKeys[i] = (int) (i * step);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Trees {
+        AVLTree<Integer> tree;
+        AVLTree<Integer> other;
+
+        @Setup(Level.Invocation)
+        public void build(SetOperationBenchmark outer) {
+            tree = new AVLTree<>();
+            tree.buildFromSorted(outer.keys);
+            other = new AVLTree<>();
+            other.buildFromSorted(outer.otherKeys);
+        }
+    }
+
+    @Benchmark
+    public AVLTree<Integer> insertEach(Trees trees) {
+        for (Integer key : trees.other) {
+            trees.tree.insert(key);
+        }
+        return trees.tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> union(Trees trees) {
+        trees.tree.union(trees.other);
+        return trees.tree;
+    }
+
+    @Benchmark
+    public AVLTree<Integer> parallelUnion(Trees trees) {
+        trees.tree.union(trees.other, true);
+        return trees.tree;
+    }
+}
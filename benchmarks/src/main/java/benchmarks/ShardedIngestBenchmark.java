@@ -0,0 +1,77 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.ShardedAVLTree;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Insert-only ingest into a ShardedAVLTree, starting from an empty tree
+   every iteration, with three kinds of key streams:
+
+   - RANDOM: uniform keys, the case the shards are even for
+   - STREAMS: every thread appends increasing keys to a range of its own,
+     e.g. per-source timestamps; the sampled writes spread the bounds over
+     the ends of the streams, so the writers land in different shards
+   - SEQUENTIAL: all threads take the next key of one shared counter;
+     every key is past all bounds, so all writers share the last shard
+     whatever the rebalancing does
+
+   Run with -t to vary the number of threads, e.g.
+
+       java -jar benchmarks/target/benchmarks.jar ShardedIngestBenchmark -t 8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ShardedIngestBenchmark {
+    public enum Pattern { RANDOM, STREAMS, SEQUENTIAL }
+
+    // Keys of different STREAMS threads are this far apart
+    private static final int STREAM_SPACING = 1 << 24;
+
+    @Param({"RANDOM", "STREAMS", "SEQUENTIAL"})
+    public Pattern pattern;
+
+    private ShardedAVLTree<Integer> tree;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger streams = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void create() {
+        tree = new ShardedAVLTree<>();
+        sequence.set(0);
+    }
+
+    @State(Scope.Thread)
+    public static class Stream {
+        int next;
+
+        @Setup(Level.Iteration)
+        public void start(ShardedIngestBenchmark benchmark) {
+            next = (benchmark.streams.getAndIncrement() % 64) * STREAM_SPACING;
+        }
+    }
+
+    @Benchmark
+    public boolean insert(Stream stream) {
+        int key;
+        switch (pattern) {
+            case RANDOM:
+                key = ThreadLocalRandom.current().nextInt();
+                break;
+            case STREAMS:
+                key = stream.next++;
+                break;
+            default:
+                key = sequence.getAndIncrement();
+                break;
+        }
+        return tree.insert(key);
+    }
+}
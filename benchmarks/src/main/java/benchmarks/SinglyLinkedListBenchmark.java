@@ -0,0 +1,127 @@
+package benchmarks;
+
+import lists.SinglyLinkedList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/* append / prepend / iterate / delete on SinglyLinkedList, with
+   java.util.LinkedList as the baseline. Every benchmark works on a
+   list of "size" elements, so the scores are per whole list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SinglyLinkedListBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Integer[] elements;
+    private SinglyLinkedList<Integer> sll;
+    private LinkedList<Integer> jdkList;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        elements = KeyDistribution.boxed(KeyDistribution.SEQUENTIAL.keys(size, 0));
+        sll = new SinglyLinkedList<>();
+        jdkList = new LinkedList<>();
+        for (Integer e : elements) {
+            sll.append(e);
+            jdkList.add(e);
+        }
+    }
+
+    @Benchmark
+    public SinglyLinkedList<Integer> append() {
+        SinglyLinkedList<Integer> list = new SinglyLinkedList<>();
+        for (Integer e : elements) {
+            list.append(e);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public LinkedList<Integer> appendJdk() {
+        LinkedList<Integer> list = new LinkedList<>();
+        for (Integer e : elements) {
+            list.addLast(e);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public SinglyLinkedList<Integer> prepend() {
+        SinglyLinkedList<Integer> list = new SinglyLinkedList<>();
+        for (Integer e : elements) {
+            list.prepend(e);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public LinkedList<Integer> prependJdk() {
+        LinkedList<Integer> list = new LinkedList<>();
+        for (Integer e : elements) {
+            list.addFirst(e);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer e : sll) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void iterateJdk(Blackhole bh) {
+        for (Integer e : jdkList) {
+            bh.consume(e);
+        }
+    }
+
+    // Deletion needs a node handle or an iterator; removing the head
+    // through a fresh iterator is the O(1) path the list supports
+    @State(Scope.Thread)
+    public static class FullLists {
+        SinglyLinkedList<Integer> sll;
+        LinkedList<Integer> jdkList;
+
+        @Setup(Level.Invocation)
+        public void fill(SinglyLinkedListBenchmark outer) {
+            sll = new SinglyLinkedList<>();
+            jdkList = new LinkedList<>();
+            for (Integer e : outer.elements) {
+                sll.append(e);
+                jdkList.add(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void delete(FullLists lists) {
+        SinglyLinkedList<Integer> list = lists.sll;
+        while (!list.isEmpty()) {
+            Iterator<Integer> it = list.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Benchmark
+    public void deleteJdk(FullLists lists) {
+        LinkedList<Integer> list = lists.jdkList;
+        while (!list.isEmpty()) {
+            Iterator<Integer> it = list.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+}
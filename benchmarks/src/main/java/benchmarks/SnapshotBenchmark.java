@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trees.AVLTree;
+import trees.KeyCodec;
+import trees.TreeSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/* Reopening a saved tree with TreeSnapshot.open, against rebuilding it
+   with one AVLTree.insert per key, and lookups on the mapped snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] lookups;
+    private Path file;
+    private TreeSnapshot<Integer> snapshot;
+    private int lookupIdx;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        keys = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, 42));
+        lookups = KeyDistribution.boxed(KeyDistribution.RANDOM.keys(size, 43));
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        file = Files.createTempFile("dsaa-snapshot", ".bin");
+        tree.save(file, KeyCodec.INT);
+        snapshot = TreeSnapshot.open(file, KeyCodec.INT);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public TreeSnapshot<Integer> open() throws IOException {
+        return TreeSnapshot.open(file, KeyCodec.INT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public AVLTree<Integer> rebuild() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean find() {
+        Integer key = lookups[lookupIdx];
+        lookupIdx = (lookupIdx + 1 == lookups.length) ? 0 : lookupIdx + 1;
+        return snapshot.contains(key);
+    }
+}
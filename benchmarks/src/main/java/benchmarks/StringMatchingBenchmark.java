@@ -0,0 +1,104 @@
+package benchmarks;
+
+import misc.StringMatching.KMPAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* KMPAlgorithm.matchAgainst against String.indexOf. Replaces the
+   one-shot System.nanoTime comparison that used to live in
+   StringMatching.main.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class StringMatchingBenchmark {
+    public enum Corpus {
+        // a^(m-1)b in a^(n-1)b: every alignment of the naive algorithm
+        // runs almost to the end of the pattern
+        WORST_CASE {
+            @Override
+            String text(int length) {
+                return repeat('a', length - 1) + "b";
+            }
+
+            @Override
+            String pattern(String text, int length) {
+                return repeat('a', length - 1) + "b";
+            }
+        },
+        // English-like text; the pattern is a phrase taken from near the end,
+        // so both algorithms have to scan most of the text
+        NATURAL {
+            @Override
+            String text(int length) {
+                StringBuilder sb = new StringBuilder(length + 16);
+                Random random = new Random(7);
+                while (sb.length() < length) {
+                    // Squaring the uniform draw favours the frequent words
+                    double u = random.nextDouble();
+                    sb.append(WORDS[(int) (u * u * WORDS.length)]).append(' ');
+                }
+                sb.setLength(length);
+                return sb.toString();
+            }
+
+            @Override
+            String pattern(String text, int length) {
+                int start = text.length() - text.length() / 20;
+                return text.substring(start, Math.min(text.length(), start + length));
+            }
+        };
+
+        abstract String text(int length);
+        abstract String pattern(String text, int length);
+    }
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "a", "in", "is", "that", "for", "it",
+            "as", "was", "with", "be", "by", "on", "not", "he", "this", "are",
+            "or", "his", "from", "at", "which", "but", "have", "an", "had", "they",
+            "you", "were", "their", "one", "all", "we", "can", "her", "has", "there",
+            "tree", "node", "list", "balance", "rotation", "height", "pattern", "prefix",
+            "algorithm", "structure", "search", "insert", "delete", "string", "match"
+    };
+
+    private static String repeat(char c, int times) {
+        return new String(new char[times]).replace('\0', c);
+    }
+
+    @Param({"WORST_CASE", "NATURAL"})
+    public Corpus corpus;
+
+    @Param({"1000000"})
+    public int textLength;
+
+    @Param({"1000"})
+    public int patternLength;
+
+    private String text;
+    private String pattern;
+    private KMPAlgorithm kmp;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        text = corpus.text(textLength);
+        pattern = corpus.pattern(text, patternLength);
+        kmp = new KMPAlgorithm(pattern);
+    }
+
+    @Benchmark
+    public int kmp() {
+        return kmp.matchAgainst(text);
+    }
+
+    // JDK baseline: naive matching with an intrinsified inner loop
+    @Benchmark
+    public int indexOf() {
+        return text.indexOf(pattern);
+    }
+}
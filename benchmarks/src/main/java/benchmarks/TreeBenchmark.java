@@ -0,0 +1,105 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/* Insert / find / delete on BSTree and AVLTree, with TreeSet as the baseline.
+   Replaces the one-shot System.nanoTime comparison that used to live in
+   AVLTree.AVLNode.main.
+
+   Note that BST with SEQUENTIAL keys degenerates into a list, so those
+   runs are quadratic in "size" and take a while.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TreeBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"BST", "AVL", "LEAN_AVL", "INT_AVL", "OFF_HEAP_AVL", "B_PLUS_TREE", "TREE_SET"})
+    public TreeImpl impl;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    @Param({"100000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] lookups;
+    private TreeImpl.OrderedSet populated;
+    private int lookupIdx;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        keys = KeyDistribution.boxed(distribution.keys(size, SEED));
+        // Lookups hit the populated key space, skewed the same way as the inserts
+        lookups = KeyDistribution.boxed(distribution.keys(size, SEED + 1));
+        populated = impl.create();
+        for (Integer key : keys) {
+            populated.insert(key);
+        }
+    }
+
+    @Benchmark
+    public boolean find() {
+        Integer key = lookups[lookupIdx];
+        lookupIdx = (lookupIdx + 1 == lookups.length) ? 0 : lookupIdx + 1;
+        return populated.contains(key);
+    }
+
+    // Insert and delete change the tree, so each invocation gets a fresh one
+    // and the score is the time for the whole batch of "size" operations.
+
+    @State(Scope.Thread)
+    public static class EmptyTree {
+        TreeImpl.OrderedSet set;
+
+        @Setup(Level.Invocation)
+        public void create(TreeBenchmark outer) {
+            set = outer.impl.create();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullTree {
+        TreeImpl.OrderedSet set;
+
+        @Setup(Level.Invocation)
+        public void fill(TreeBenchmark outer) {
+            set = outer.impl.create();
+            for (Integer key : outer.keys) {
+                set.insert(key);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void insert(EmptyTree state, Blackhole bh) {
+        TreeImpl.OrderedSet set = state.set;
+        for (Integer key : keys) {
+            bh.consume(set.insert(key));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public void delete(FullTree state, Blackhole bh) {
+        TreeImpl.OrderedSet set = state.set;
+        for (Integer key : lookups) {
+            bh.consume(set.delete(key));
+        }
+    }
+}
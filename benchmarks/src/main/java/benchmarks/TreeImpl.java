@@ -0,0 +1,185 @@
+package benchmarks;
+
+import trees.AVLTree;
+import trees.BPlusTree;
+import trees.BSTree;
+import trees.IntAVLTree;
+import trees.KeyCodec;
+import trees.LeanAVLTree;
+import trees.OffHeapAVLTree;
+
+import java.util.TreeSet;
+
+/* The ordered set implementations the tree benchmarks compare.
+   Every benchmark fork only ever creates one of them, so the calls
+   through OrderedSet stay monomorphic.
+ */
+public enum TreeImpl {
+    BST {
+        @Override
+        public OrderedSet create() {
+            BSTree<Integer> tree = new BSTree<>();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.find(key) != null;
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    AVL {
+        @Override
+        public OrderedSet create() {
+            AVLTree<Integer> tree = new AVLTree<>();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.find(key) != null;
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    // No parent pointers, balance factor in a byte
+    LEAN_AVL {
+        @Override
+        public OrderedSet create() {
+            LeanAVLTree<Integer> tree = new LeanAVLTree<>();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.contains(key);
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    // Keys are unboxed on the way in, the tree itself stores plain ints
+    INT_AVL {
+        @Override
+        public OrderedSet create() {
+            IntAVLTree tree = new IntAVLTree();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.contains(key);
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    // Nodes in direct ByteBuffers, keys encoded with KeyCodec.INT
+    OFF_HEAP_AVL {
+        @Override
+        public OrderedSet create() {
+            OffHeapAVLTree<Integer> tree = new OffHeapAVLTree<>(KeyCodec.INT);
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.contains(key);
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    // Keys packed in arrays of BPlusTree.DEFAULT_FANOUT - 1 per node
+    B_PLUS_TREE {
+        @Override
+        public OrderedSet create() {
+            BPlusTree<Integer> tree = new BPlusTree<>();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return tree.insert(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return tree.contains(key);
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return tree.delete(key);
+                }
+            };
+        }
+    },
+    // JDK baseline (a red-black tree)
+    TREE_SET {
+        @Override
+        public OrderedSet create() {
+            TreeSet<Integer> set = new TreeSet<>();
+            return new OrderedSet() {
+                @Override
+                public boolean insert(Integer key) {
+                    return set.add(key);
+                }
+
+                @Override
+                public boolean contains(Integer key) {
+                    return set.contains(key);
+                }
+
+                @Override
+                public boolean delete(Integer key) {
+                    return set.remove(key);
+                }
+            };
+        }
+    };
+
+    public abstract OrderedSet create();
+
+    public interface OrderedSet {
+        boolean insert(Integer key);
+        boolean contains(Integer key);
+        boolean delete(Integer key);
+    }
+}
@@ -0,0 +1,172 @@
+package trees;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/* Multi-threaded check of ConcurrentAVLTree, run by mvn test.
+
+   - Writers insert and delete random keys of a small range, so they
+     collide all the time, and count every successful insert (+1) and
+     delete (-1) per key. Once they are done, every key's net count has
+     to be 0 or 1 and match contains, iteration and size.
+   - Meanwhile readers iterate over the tree, in which the even keys are
+     never deleted: they have to see every even key, in order.
+   - The quiescent tree has to be an AVL tree: keys in order, parent
+     links right, heights exact, balance within 1, and routing nodes
+     only with two children.
+
+   Throws an AssertionError (failing the build) on the first violation.
+ */
+public final class ConcurrentAVLTreeStress {
+    private static final int KEY_RANGE = 1 << 12;
+    private static final int WRITERS = 4;
+    private static final int READERS = 2;
+    private static final int OPS_PER_WRITER = 400_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++){
+            run();
+        }
+        System.out.println("ConcurrentAVLTreeStress: " + ROUNDS + " rounds OK");
+    }
+
+    private static void run() throws InterruptedException {
+        ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+        AtomicIntegerArray net = new AtomicIntegerArray(KEY_RANGE);
+        for (int key = 0; key < KEY_RANGE; key += 2){
+            tree.insert(key);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++){
+            writers.add(start(failure, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int op = 0; op < OPS_PER_WRITER; op++){
+                    int key = random.nextInt(KEY_RANGE / 2) * 2 + 1; // odd keys only
+                    if (random.nextBoolean()){
+                        if (tree.insert(key)){
+                            net.incrementAndGet(key);
+                        }
+                    }
+                    else if (tree.delete(key)){
+                        net.decrementAndGet(key);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < READERS; i++){
+            readers.add(start(failure, () -> {
+                while (writing.get()){
+                    checkIteration(tree);
+                }
+            }));
+        }
+
+        for (Thread writer : writers){
+            writer.join();
+        }
+        writing.set(false);
+        for (Thread reader : readers){
+            reader.join();
+        }
+        if (failure.get() != null){
+            throw new AssertionError("Worker failed", failure.get());
+        }
+
+        checkContents(tree, net);
+        checkShape(tree);
+    }
+
+    private static Thread start(AtomicReference<Throwable> failure, Runnable task){
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            }
+            catch (Throwable e){
+                failure.compareAndSet(null, e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    // Keys in increasing order, every (never deleted) even key among them
+    private static void checkIteration(ConcurrentAVLTree<Integer> tree){
+        int expectedEven = 0;
+        int previous = -1;
+        for (int key : tree){
+            check(key > previous, "iterator returned " + key + " after " + previous);
+            previous = key;
+            if (key % 2 == 0){
+                check(key == expectedEven, "iterator missed key " + expectedEven);
+                expectedEven += 2;
+            }
+        }
+        check(expectedEven == KEY_RANGE, "iterator missed key " + expectedEven);
+
+        Integer even = tree.ceiling(KEY_RANGE / 2 - 1);
+        check(even != null && even >= KEY_RANGE / 2 - 1 && even <= KEY_RANGE / 2,
+              "ceiling skipped a present key: " + even);
+    }
+
+    private static void checkContents(ConcurrentAVLTree<Integer> tree, AtomicIntegerArray net){
+        List<Integer> expected = new ArrayList<>();
+        for (int key = 0; key < KEY_RANGE; key++){
+            int count = key % 2 == 0 ? 1 : net.get(key);
+            check(count == 0 || count == 1, "key " + key + " has net count " + count);
+            check(tree.contains(key) == (count == 1), "contains(" + key + ") disagrees with net count " + count);
+            if (count == 1){
+                expected.add(key);
+            }
+        }
+
+        Iterator<Integer> it = tree.iterator();
+        for (int key : expected){
+            check(it.hasNext() && it.next() == key, "iteration does not match at key " + key);
+        }
+        check(!it.hasNext(), "iteration has keys that were deleted");
+        check(tree.size() == expected.size(), "size " + tree.size() + ", expected " + expected.size());
+    }
+
+    private static void checkShape(ConcurrentAVLTree<Integer> tree){
+        ConcurrentAVLTree.Node<Integer> root = tree.root();
+        check(root == null || root.parent != null, "root has no parent holder");
+        checkSubtree(root, null, null);
+    }
+
+    // Returns the height of the subtree, whose keys lie in (low, high)
+    private static int checkSubtree(ConcurrentAVLTree.Node<Integer> node, Integer low, Integer high){
+        if (node == null){
+            return 0;
+        }
+        check((low == null || node.key > low) && (high == null || node.key < high),
+              "key " + node.key + " out of order");
+        check((node.version & 0x3L) == 0, "node " + node.key + " is shrinking or unlinked");
+        check(node.value != null || (node.left != null && node.right != null),
+              "routing node " + node.key + " has fewer than two children");
+        check(node.left == null || node.left.parent == node, "wrong parent link below " + node.key);
+        check(node.right == null || node.right.parent == node, "wrong parent link below " + node.key);
+
+        int hL = checkSubtree(node.left, low, node.key);
+        int hR = checkSubtree(node.right, node.key, high);
+        check(Math.abs(hL - hR) <= 1, "node " + node.key + " has balance " + (hL - hR));
+        check(node.height == 1 + Math.max(hL, hR), "node " + node.key + " has height " + node.height
+                                                   + ", expected " + (1 + Math.max(hL, hR)));
+        return 1 + Math.max(hL, hR);
+    }
+
+    private static void check(boolean condition, String message){
+        if (!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package trees;
+
+/* JDK 9+ version of SpinWait, see src/trees/SpinWait.java */
+final class SpinWait {
+    private SpinWait(){
+    }
+
+    static void onSpinWait(){
+        Thread.onSpinWait();
+    }
+}
@@ -1,12 +1,13 @@
 package lists;
 
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 public class SinglyLinkedList<E> implements List<E>, Iterable<E> {
 
     public SinglyLinkedList() {
@@ -147,7 +148,15 @@ public class SinglyLinkedList<E> implements List<E>, Iterable<E> {
 
     @Override
     public Spliterator<E> spliterator() {
-        throw new NotImplementedException();
+        return new SinglyLinkedListSpliterator();
+    }
+
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
     }
 
     private class SLLNode<E> {
@@ -248,6 +257,85 @@ public class SinglyLinkedList<E> implements List<E>, Iterable<E> {
         }
     }
 
+    // Spliterator batch sizes, the same as the ones of java.util.LinkedList
+    private static final int BATCH_UNIT = 1 << 10;
+    private static final int MAX_BATCH = 1 << 25;
+
+    /*
+     * A linked list can only be walked from the front, so like the
+     * spliterator of java.util.LinkedList, trySplit copies the next batch
+     * of elements into an array and hands that off. Every batch is
+     * BATCH_UNIT elements bigger than the last one, so the cost of the
+     * copying is amortized over more and more work.
+     * The size is not reported, since size() would need a pass of its own.
+     * The start of the list is looked up when the traversal starts, not
+     * when the spliterator is created.
+     */
+    private class SinglyLinkedListSpliterator implements Spliterator<E> {
+        private SLLNode<E> curr;
+        private boolean started;
+        private int batch;
+
+        private SLLNode<E> current() {
+            if (!started) {
+                curr = _head;
+                started = true;
+            }
+            return curr;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            SLLNode<E> node = current();
+            if (node == null) {
+                return null;
+            }
+
+            int n = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+            Object[] elements = new Object[n];
+            int count = 0;
+            do {
+                elements[count++] = node.getData();
+                node = node.getNext();
+            } while (node != null && count < n);
+
+            curr = node;
+            batch = count;
+            return Spliterators.spliterator(elements, 0, count, Spliterator.ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            SLLNode<E> node = current();
+            if (node == null) {
+                return false;
+            }
+            curr = node.getNext();
+            action.accept(node.getData());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            SLLNode<E> node = current();
+            curr = null;
+            while (node != null) {
+                action.accept(node.getData());
+                node = node.getNext();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED;
+        }
+    }
+
     public static void main(String args[]){
         /* Shows how to use the API */
         SinglyLinkedList<Integer> intSLL = new SinglyLinkedList<>();
@@ -73,28 +73,5 @@ public class StringMatching {
 
         System.out.println(KMPExercisesA.matchAgainst("aaabaadaabaaa"));
         System.out.println(KMPExercisesB.matchAgainst("000010001010001"));
-
-        // Worst case
-        int PATTERN_LEN = 1000;
-        String pattern = new String(new char[PATTERN_LEN-1]).replace('\0', 'a') + "b";
-
-        int TEXT_LEN = 10000000;
-        String text = new String(new char[TEXT_LEN-1]).replace('\0', 'a') + "b";
-
-        long start = System.nanoTime();
-        int res = new KMPAlgorithm(pattern).matchAgainst(text);
-        long end = System.nanoTime();
-
-        System.out.println("KMP ALGORITHM: " + res + "\n" +
-                "TIME: " + (end-start)/10e8);
-
-        start = System.nanoTime();
-        // Java uses naive string matching
-        // (slightly improved though)
-        res = text.indexOf(pattern);
-        end = System.nanoTime();
-
-        System.out.println("NAIVE ALGORITHM: " + res + "\n" +
-                "TIME: " + (end-start)/10e8);
     }
 }
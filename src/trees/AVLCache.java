@@ -0,0 +1,472 @@
+package trees;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntBiFunction;
+
+/* A cache with a bounded total weight over an AVLMap, so besides lookups
+   it serves ordered reads: ranges, first/last, floor/ceiling.
+
+   Every node is also on one of a few doubly linked queues, through
+   prev/next fields in the node itself, so a hit reorders the queues in
+   O(1) without allocating. Which queues there are depends on the
+   eviction policy:
+
+   - LRU: one queue in order of last access; evicts its head.
+   - LFU: one queue per access count 1..15, each in LRU order; a hit
+     moves the entry to the next one. Counts saturate at 15, so the
+     lowest non-empty queue is found with at most 15 checks. Evicts the
+     least recently used of the least frequently used entries.
+   - W_TINY_LFU: after Einziger, Friedman and Manes, "TinyLFU: A Highly
+     Efficient Cache Admission Policy" (2017). New entries go to a small
+     LRU window (1% of the weight). Entries pushed out of the window
+     enter the main space only if a frequency sketch of recent accesses
+     (hits and misses) has seen them more often than the entry main
+     would evict; main is a segmented LRU of probation and protected
+     (80%) entries. Resists scans and one-hit wonders better than LRU.
+
+   Weights come from a weigher (every entry weighs 1 without one), so
+   the bound is either a number of entries or e.g. bytes. Only get and
+   put count as accesses; ordered reads and containsKey do not disturb
+   the eviction order.
+
+   Not thread-safe, like the trees.
+ */
+public class AVLCache<K, V> {
+    public enum Policy { LRU, LFU, W_TINY_LFU }
+
+    private static final int LRU = 0;
+    private static final int MAX_FREQUENCY = 15;
+    // the queues of W_TINY_LFU
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final Policy policy;
+    private final long maxWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final Index index;
+
+    private final CacheNode<K, V>[] heads;
+    private final CacheNode<K, V>[] tails;
+    private final long[] queueWeights;
+    private long weight;
+
+    // W_TINY_LFU only
+    private final long windowMax;
+    private final long protectedMax;
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AVLCache(long maxWeight, Policy policy, Comparator<K> cmp, ToIntBiFunction<? super K, ? super V> weigher){
+        if (maxWeight < 1){
+            throw new IllegalArgumentException("Cache needs room for an entry, got maximum weight " + maxWeight);
+        }
+        this.policy = policy;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.index = new Index(cmp);
+        this.heads = (CacheNode<K, V>[]) new CacheNode[MAX_FREQUENCY + 1];
+        this.tails = (CacheNode<K, V>[]) new CacheNode[MAX_FREQUENCY + 1];
+        this.queueWeights = new long[MAX_FREQUENCY + 1];
+        this.windowMax = Math.max(1, maxWeight / 100);
+        this.protectedMax = (maxWeight - windowMax) * 4 / 5;
+        this.sketch = policy == Policy.W_TINY_LFU ? new FrequencySketch() : null;
+    }
+
+    public AVLCache(long maxWeight, Policy policy){
+        this(maxWeight, policy, null, null);
+    }
+
+    private static final class CacheNode<K, V> extends AVLMap.MapNode<K, V> {
+        private CacheNode<K, V> prev;
+        private CacheNode<K, V> next;
+        private int weight;
+        // for LFU the access count
+        private byte queue;
+
+        CacheNode(K key){
+            super(key);
+        }
+    }
+
+    private final class Index extends AVLMap<K, V> {
+        Index(Comparator<K> cmp){
+            super(cmp);
+        }
+
+        @Override
+        protected CacheNode<K, V> createNode(K key){
+            return new CacheNode<>(key);
+        }
+
+        // The node that stays in the tree takes over the queue position of
+        // the one that is taken out, see removeNode
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void moveEntry(Node<K> from, Node<K> to){
+            super.moveEntry(from, to);
+            replace((CacheNode<K, V>) from, (CacheNode<K, V>) to);
+        }
+    }
+
+    /* --- queues --- */
+
+    private void append(CacheNode<K, V> node, int queue){
+        node.queue = (byte) queue;
+        node.next = null;
+        node.prev = tails[queue];
+        if (tails[queue] == null){
+            heads[queue] = node;
+        }
+        else {
+            tails[queue].next = node;
+        }
+        tails[queue] = node;
+        queueWeights[queue] += node.weight;
+    }
+
+    private void unlink(CacheNode<K, V> node){
+        int queue = node.queue;
+        if (node.prev == null){
+            heads[queue] = node.next;
+        }
+        else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null){
+            tails[queue] = node.prev;
+        }
+        else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        queueWeights[queue] -= node.weight;
+    }
+
+    private void moveToTail(CacheNode<K, V> node, int queue){
+        unlink(node);
+        append(node, queue);
+    }
+
+    // Put to where from is in its queue; from leaves the queue
+    private void replace(CacheNode<K, V> from, CacheNode<K, V> to){
+        int queue = from.queue;
+        to.queue = from.queue;
+        to.weight = from.weight;
+        to.prev = from.prev;
+        to.next = from.next;
+        if (to.prev == null){
+            heads[queue] = to;
+        }
+        else {
+            to.prev.next = to;
+        }
+        if (to.next == null){
+            tails[queue] = to;
+        }
+        else {
+            to.next.prev = to;
+        }
+        from.prev = null;
+        from.next = null;
+    }
+
+    /* --- cache operations --- */
+
+    // The value of key, null if it is not cached; counts as an access
+    @SuppressWarnings("unchecked")
+    public V get(K key){
+        if (sketch != null){
+            sketch.increment(key);
+        }
+        CacheNode<K, V> node = (CacheNode<K, V>) index.find(key);
+        if (node == null){
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(node);
+        return node.getValue();
+    }
+
+    /* Cache value for key, evicting entries until the total weight fits
+       again; that may be this entry itself if it is heavier than the
+       whole cache. Returns the previous value of key, null if there was
+       none.
+     */
+    public V put(K key, V value){
+        int entryWeight = weigher == null ? 1 : weigher.applyAsInt(key, value);
+        if (entryWeight < 0){
+            throw new IllegalArgumentException("Weight of an entry cannot be negative, got " + entryWeight);
+        }
+        if (sketch != null){
+            sketch.increment(key);
+        }
+
+        V oldValue = null;
+        @SuppressWarnings("unchecked")
+        CacheNode<K, V> node = (CacheNode<K, V>) index.search(key);
+        if (node == null){
+            node = (CacheNode<K, V>) index.link(key, value);
+            node.weight = entryWeight;
+            if (sketch != null){
+                sketch.ensureCapacity(index.size());
+            }
+            append(node, policy == Policy.LFU ? 1 : LRU);
+        }
+        else {
+            oldValue = node.getValue();
+            node.setValue(value);
+            int queue = node.queue;
+            unlink(node);
+            weight -= node.weight;
+            node.weight = entryWeight;
+            append(node, queue);
+            touch(node);
+        }
+        weight += entryWeight;
+        evict();
+        return oldValue;
+    }
+
+    // Returns the value key had, null if it was not cached
+    @SuppressWarnings("unchecked")
+    public V remove(K key){
+        CacheNode<K, V> node = (CacheNode<K, V>) index.find(key);
+        if (node == null){
+            return null;
+        }
+        V oldValue = node.getValue();
+        removeNode(node);
+        return oldValue;
+    }
+
+    // A hit on node
+    private void touch(CacheNode<K, V> node){
+        switch (policy){
+            case LRU:
+                moveToTail(node, LRU);
+                break;
+            case LFU:
+                moveToTail(node, Math.min(node.queue + 1, MAX_FREQUENCY));
+                break;
+            default:
+                moveToTail(node, node.queue == WINDOW ? WINDOW : PROTECTED);
+                break;
+        }
+    }
+
+    private void removeNode(CacheNode<K, V> node){
+        unlink(node);
+        weight -= node.weight;
+        // if node has two children, its successor is taken out of the tree
+        // instead and node takes over its key, value and queue position
+        index.deleteNode(node);
+    }
+
+    private void evictNode(CacheNode<K, V> node){
+        removeNode(node);
+        evictions++;
+    }
+
+    private void evict(){
+        if (policy == Policy.W_TINY_LFU){
+            evictTinyLfu();
+            return;
+        }
+        while (weight > maxWeight){
+            int queue = policy == Policy.LFU ? 1 : LRU;
+            while (heads[queue] == null){
+                queue++;
+            }
+            evictNode(heads[queue]);
+        }
+    }
+
+    private void evictTinyLfu(){
+        while (queueWeights[PROTECTED] > protectedMax){
+            moveToTail(heads[PROTECTED], PROBATION);
+        }
+        // entries pushed out of the window compete with the head of
+        // probation for a place in main
+        while (queueWeights[WINDOW] > windowMax){
+            CacheNode<K, V> candidate = heads[WINDOW];
+            moveToTail(candidate, PROBATION);
+            if (weight > maxWeight){
+                CacheNode<K, V> victim = heads[PROBATION];
+                if (victim != candidate
+                        && sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())){
+                    evictNode(victim);
+                }
+                else {
+                    evictNode(candidate);
+                }
+            }
+        }
+        while (weight > maxWeight){
+            if (heads[PROBATION] != null){
+                evictNode(heads[PROBATION]);
+            }
+            else if (heads[PROTECTED] != null){
+                evictNode(heads[PROTECTED]);
+            }
+            else {
+                evictNode(heads[WINDOW]);
+            }
+        }
+    }
+
+    /* --- reads that do not count as accesses --- */
+
+    public boolean containsKey(K key){
+        return index.find(key) != null;
+    }
+
+    public int size(){
+        return index.size();
+    }
+
+    public boolean isEmpty(){
+        return index.isEmpty();
+    }
+
+    // Total weight of the cached entries
+    public long weight(){
+        return weight;
+    }
+
+    public long maxWeight(){
+        return maxWeight;
+    }
+
+    public K first(){
+        return index.first();
+    }
+
+    public K last(){
+        return index.last();
+    }
+
+    public K floor(K key){
+        return index.floor(key);
+    }
+
+    public K ceiling(K key){
+        return index.ceiling(key);
+    }
+
+    // The cached keys in [from, to); null bounds are open
+    public Iterator<K> keys(K from, K to){
+        return index.iterator(from, to);
+    }
+
+    // The cached entries with keys in [from, to), in key order; null bounds are open
+    public void forEach(K from, K to, BiConsumer<? super K, ? super V> action){
+        index.forEach(from, to, action);
+    }
+
+    /* --- statistics --- */
+
+    public long getHits(){
+        return hits;
+    }
+
+    public long getMisses(){
+        return misses;
+    }
+
+    public long getEvictions(){
+        return evictions;
+    }
+
+    public double getHitRate(){
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /* Count-min sketch of 4-bit counters, 16 per long, for estimating
+       how often a key was accessed recently. Once it has counted ten
+       times as many accesses as it has counters per row, every counter is
+       halved, so old popularity fades.
+
+       The table grows with the number of entries, one long per entry:
+       the total weight says nothing about how many entries there are, and
+       a sketch sized by it would be far too big for caches weighed in
+       bytes. Growing starts the counts over.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                                             0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int MIN_LENGTH = 16;
+        private static final int MAX_LENGTH = 1 << 24;
+
+        private long[] table = new long[MIN_LENGTH];
+        private int sampleSize = 10 * MIN_LENGTH;
+        private int additions;
+
+        void ensureCapacity(int entries){
+            int length = table.length;
+            if (entries <= length || length == MAX_LENGTH){
+                return;
+            }
+            while (length < entries && length < MAX_LENGTH){
+                length <<= 1;
+            }
+            table = new long[length];
+            sampleSize = 10 * length;
+            additions = 0;
+        }
+
+        // Counter i of key: the index of its long (high bits) and its
+        // shift within that long (low 6 bits)
+        private long slot(int hash, int i){
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h ^= h >>> 32;
+            return ((h & (table.length - 1)) << 6) | (((h >>> 40) & 15) << 2);
+        }
+
+        private static int spread(Object key){
+            int h = key.hashCode() * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        void increment(Object key){
+            int hash = spread(key);
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++){
+                long slot = slot(hash, i);
+                int index = (int) (slot >>> 6);
+                int shift = (int) (slot & 63);
+                if (((table[index] >>> shift) & 15) < 15){
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize){
+                for (int i = 0; i < table.length; i++){
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key){
+            int hash = spread(key);
+            int frequency = 15;
+            for (int i = 0; i < SEEDS.length; i++){
+                long slot = slot(hash, i);
+                long count = (table[(int) (slot >>> 6)] >>> (slot & 63)) & 15;
+                frequency = Math.min(frequency, (int) count);
+            }
+            return frequency;
+        }
+    }
+}
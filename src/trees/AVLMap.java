@@ -0,0 +1,263 @@
+package trees;
+
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/* Ordered map on an AVLTree of its keys: every node carries the value of
+   its key, so an update needs one search instead of a lookup in the tree
+   and another one in a map of values. put, computeIfAbsent and merge go
+   down from the root once; if the key is missing, the new node is linked
+   in where that search ended and the tree is rebalanced on the way back
+   up, without searching again as insert would.
+
+   The keys are the AVLTree keys, so navigation, rank, ranges and the
+   rest of the tree API work on the map directly. Keys added with insert
+   map to null, and so do the keys the key-only bulk operations add
+   (buildFromSorted, insertAllSorted, parallelBuild and the key of join).
+   filter, split and the set operations keep the values of the nodes
+   they keep. As in java.util.Map, computeIfAbsent and merge treat a null
+   value as a missing one.
+ */
+public class AVLMap<K, V> extends AVLTree<K> {
+    // Where the last search that found nothing would link in a node for
+    // its key: below searchParent, on the left if searchLeft
+    private MapNode<K, V> searchParent;
+    private boolean searchLeft;
+
+    public AVLMap(){
+        super();
+    }
+
+    public AVLMap(Comparator<K> cmp){
+        super(cmp);
+    }
+
+    @Override
+    public MapNode<K, V> getRoot(){
+        return mapNode(super.getRoot());
+    }
+
+    // The nodes of an AVLMap are MapNodes of its own value type
+    @SuppressWarnings("unchecked")
+    private static <K, V> MapNode<K, V> mapNode(Node<K> node){
+        return (MapNode<K, V>) node;
+    }
+
+    @Override
+    protected MapNode<K, V> createNode(K key){
+        return new MapNode<>(key);
+    }
+
+    @Override
+    protected void releaseNode(Node<K> node){
+        mapNode(node).value = null;
+        super.releaseNode(node);
+    }
+
+    @Override
+    protected void moveEntry(Node<K> from, Node<K> to){
+        super.moveEntry(from, to);
+        mapNode(to).value = mapNode(from).value;
+    }
+
+    @Override
+    protected AVLMap<K, V> createTree(){
+        return new AVLMap<>(comparator());
+    }
+
+    // A new map with the entries whose keys match, values included
+    @Override
+    public AVLMap<K, V> filter(Predicate<? super K> predicate){
+        // createTree makes an AVLMap of the same kind
+        @SuppressWarnings("unchecked")
+        AVLMap<K, V> result = (AVLMap<K, V>) super.filter(predicate);
+        // the keys of result are a subsequence of ours: copy the values
+        // over in one pass through both
+        Node<K> node = subtreeMin(getRoot());
+        for (Node<K> copy = subtreeMin(result.getRoot()); copy != null; copy = successor(copy)){
+            while (compareKeys(node.getKey(), copy.getKey()) != 0){
+                node = successor(node);
+            }
+            mapNode(copy).value = mapNode(node).value;
+        }
+        return result;
+    }
+
+    // The node of key, or null after remembering where it would go
+    protected MapNode<K, V> search(K key){
+        MapNode<K, V> tmp = getRoot();
+        MapNode<K, V> prev = null;
+        int pathLength = 0;
+
+        int cmpRes = 0;
+        while (tmp != null){
+            pathLength++;
+            cmpRes = compareKeys(tmp.getKey(), key);
+            if (cmpRes == 0){
+                break;
+            }
+            prev = tmp;
+            tmp = cmpRes > 0 ? tmp.getLeft() : tmp.getRight();
+        }
+
+        if (TreeMetrics.ENABLED){
+            metrics().searchPath(pathLength);
+        }
+        searchParent = prev;
+        searchLeft = cmpRes > 0;
+        return tmp;
+    }
+
+    // Link in a node for a key the last search did not find
+    protected MapNode<K, V> link(K key, V value){
+        MapNode<K, V> newNode = mapNode(obtainNode(key));
+        newNode.value = value;
+        MapNode<K, V> parent = searchParent;
+        searchParent = null;
+        if (parent == null){
+            changeChild(null, null, newNode);
+        }
+        else {
+            newNode.setParent(parent);
+            if (searchLeft){
+                parent.setLeft(newNode);
+            }
+            else {
+                parent.setRight(newNode);
+            }
+        }
+        rebalanceInserted(newNode);
+        return newNode;
+    }
+
+    public V get(K key){
+        MapNode<K, V> node = mapNode(find(key));
+        return node == null ? null : node.value;
+    }
+
+    public V getOrDefault(K key, V defaultValue){
+        MapNode<K, V> node = mapNode(find(key));
+        return node == null ? defaultValue : node.value;
+    }
+
+    public boolean containsKey(K key){
+        return find(key) != null;
+    }
+
+    // Returns the previous value of key, null if there was none
+    public V put(K key, V value){
+        MapNode<K, V> node = search(key);
+        if (node == null){
+            link(key, value);
+            return null;
+        }
+        V oldValue = node.value;
+        node.value = value;
+        return oldValue;
+    }
+
+    // Returns the value key had, null if there was none
+    public V remove(K key){
+        MapNode<K, V> node = mapNode(find(key));
+        if (node == null){
+            return null;
+        }
+        V oldValue = node.value;
+        deleteNode(node);
+        return oldValue;
+    }
+
+    /* The value of key; if there is none, the one mappingFunction gives,
+       which is put unless it is null. mappingFunction must not change the
+       map, the node is linked in where the search before it ended.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction){
+        MapNode<K, V> node = search(key);
+        if (node != null && node.value != null){
+            return node.value;
+        }
+        V value = mappingFunction.apply(key);
+        if (value != null){
+            if (node == null){
+                link(key, value);
+            }
+            else {
+                node.value = value;
+            }
+        }
+        return value;
+    }
+
+    /* Put value if key has no value, otherwise the result of remapping the
+       old value and value; a null result removes key. Returns the new
+       value. remappingFunction must not change the map.
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction){
+        if (value == null){
+            throw new NullPointerException("merge needs a value");
+        }
+        MapNode<K, V> node = search(key);
+        if (node == null){
+            link(key, value);
+            return value;
+        }
+        V newValue = node.value == null ? value : remappingFunction.apply(node.value, value);
+        if (newValue == null){
+            deleteNode(node);
+        }
+        else {
+            node.value = newValue;
+        }
+        return newValue;
+    }
+
+    // In key order
+    public void forEach(BiConsumer<? super K, ? super V> action){
+        for (Node<K> node = subtreeMin(getRoot()); node != null; node = successor(node)){
+            action.accept(node.getKey(), AVLMap.<K, V>mapNode(node).value);
+        }
+    }
+
+    // The entries with keys in [from, to), in key order; null bounds are open
+    public void forEach(K from, K to, BiConsumer<? super K, ? super V> action){
+        for (Node<K> node = from == null ? subtreeMin(getRoot()) : ceilingNode(from, true);
+             node != null && (to == null || compareKeys(node.getKey(), to) < 0);
+             node = successor(node)){
+            action.accept(node.getKey(), AVLMap.<K, V>mapNode(node).value);
+        }
+    }
+
+    protected static class MapNode<K, V> extends AVLTree.AVLNode<K> {
+        private V value;
+
+        public MapNode(K key){
+            super(key);
+        }
+
+        public V getValue(){
+            return value;
+        }
+
+        public void setValue(V value){
+            this.value = value;
+        }
+
+        @Override
+        public MapNode<K, V> getLeft(){
+            return mapNode(super.getLeft());
+        }
+
+        @Override
+        public MapNode<K, V> getRight(){
+            return mapNode(super.getRight());
+        }
+
+        @Override
+        public MapNode<K, V> getParent(){
+            return mapNode(super.getParent());
+        }
+    }
+}
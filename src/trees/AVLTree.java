@@ -1,10 +1,9 @@
 package trees;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.IntStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
 
 import static trees.AVLTree.AVLNode.balanceOK;
 import static trees.AVLTree.AVLNode.height;
@@ -52,97 +51,545 @@ public class AVLTree<E> extends BSTree<E> {
         }
     }
 
+    @Override
+    protected AVLNode<E> createNode(E key){
+        return new AVLNode<E>(key);
+    }
+
+    @Override
+    protected void resetNode(Node<E> node){
+        ((AVLNode<E>) node).resetHeight();
+    }
+
+    @Override
+    protected void initNode(Node<E> node){
+        ((AVLNode<E>) node).resetHeight();
+    }
+
+    @Override
+    protected AVLTree<E> createTree(){
+        return new AVLTree<>(comparator());
+    }
+
+    @Override
+    public AVLTree<E> filter(Predicate<? super E> predicate){
+        return (AVLTree<E>) super.filter(predicate);
+    }
+
     @Override
     public boolean insert(E key){
-        AVLNode<E> newNode = new AVLNode<E>(key);
+        AVLNode<E> newNode = (AVLNode<E>) obtainNode(key);
         boolean success = doInsert(newNode);
-        if (success){
-            AVLNode<E> imbalancedNode = newNode;
-            AVLNode<E> child = null;
-            AVLNode<E> grandchild = null;
-
-            while(imbalancedNode != null){
-                imbalancedNode.resetHeight();
-
-                if (balanceOK(imbalancedNode.getBalance())){
-                    grandchild = child;
-                    child = imbalancedNode;
-                    imbalancedNode = imbalancedNode.getParent();
-                }
-                else {
-                    balance(imbalancedNode, child, grandchild);
+        if (!success){
+            releaseNode(newNode);
+        }
+        else {
+            rebalanceInserted(newNode);
+        }
+        return success;
+    }
 
-                    // since we fixed the tree imbalance, we can break the loop
-                    imbalancedNode = null; // there are no more imbalanced nodes
+    // Restore the AVL property on the path from a newly linked leaf to the root
+    protected void rebalanceInserted(AVLNode<E> newNode){
+        AVLNode<E> imbalancedNode = newNode;
+        AVLNode<E> child = null;
+        AVLNode<E> grandchild = null;
+
+        while(imbalancedNode != null){
+            imbalancedNode.resetHeight();
+
+            if (balanceOK(imbalancedNode.getBalance())){
+                grandchild = child;
+                child = imbalancedNode;
+                imbalancedNode = imbalancedNode.getParent();
+            }
+            else {
+                balance(imbalancedNode, child, grandchild);
+
+                // since we fixed the tree imbalance, there are no more
+                // imbalanced nodes, but the subtree sizes above still grew
+                for (AVLNode<E> node = imbalancedNode.getParent(); node != null; node = node.getParent()){
+                    node.resetHeight();
                 }
+                imbalancedNode = null;
+            }
+        }
+    }
+
+    // Number of keys in the tree
+    public int size(){
+        return AVLNode.size(getRoot());
+    }
+
+    // Number of keys in the tree that are smaller than key
+    public int rank(E key){
+        int rank = 0;
+        AVLNode<E> tmp = getRoot();
+        while (tmp != null){
+            if (compareKeys(tmp.getKey(), key) >= 0){
+                tmp = tmp.getLeft();
+            }
+            else {
+                rank += AVLNode.size(tmp.getLeft()) + 1;
+                tmp = tmp.getRight();
+            }
+        }
+        return rank;
+    }
+
+    // The k-th smallest key, counting from 0
+    public E select(int k){
+        if (k < 0 || k >= size()){
+            throw new IndexOutOfBoundsException("Index: " + k + ", size: " + size());
+        }
+        AVLNode<E> tmp = getRoot();
+        while (true){
+            int leftSize = AVLNode.size(tmp.getLeft());
+            if (k < leftSize){
+                tmp = tmp.getLeft();
+            }
+            else if (k == leftSize){
+                return tmp.getKey();
+            }
+            else {
+                k -= leftSize + 1;
+                tmp = tmp.getRight();
             }
         }
-        return success;
+    }
+
+    @Override
+    protected long indexOf(Node<E> node){
+        if (node == null){
+            return size();
+        }
+        AVLNode<E> tmp = (AVLNode<E>) node;
+        long index = AVLNode.size(tmp.getLeft());
+        while (tmp.getParent() != null){
+            if (tmp.isRightChildOf(tmp.getParent())){
+                index += AVLNode.size(tmp.getParent().getLeft()) + 1;
+            }
+            tmp = tmp.getParent();
+        }
+        return index;
+    }
+
+    // Number of keys in [from, to)
+    public int countRange(E from, E to){
+        if (compareKeys(from, to) >= 0){
+            return 0;
+        }
+        return rank(to) - rank(from);
     }
 
     private void balance(AVLNode<E> imbalancedNode, AVLNode<E> child, AVLNode<E> grandchild) {
         if (child.isLeftChildOf(imbalancedNode)){
             if (grandchild.isLeftChildOf(child)){
                 RightRotate(imbalancedNode); // LL case
+                if (TreeMetrics.ENABLED){
+                    metrics().rotation(TreeMetrics.Rotation.LL);
+                }
             }
             else { // LR case
                 LeftRotate(child);
                 RightRotate(imbalancedNode);
+                if (TreeMetrics.ENABLED){
+                    metrics().rotation(TreeMetrics.Rotation.LR);
+                }
             }
         }
         else {
             if (grandchild.isRightChildOf(child)){
                 LeftRotate(imbalancedNode); //RR case
+                if (TreeMetrics.ENABLED){
+                    metrics().rotation(TreeMetrics.Rotation.RR);
+                }
             }
             else { // RL case
                 RightRotate(child);
                 LeftRotate(imbalancedNode);
+                if (TreeMetrics.ENABLED){
+                    metrics().rotation(TreeMetrics.Rotation.RL);
+                }
             }
         }
     }
 
     @Override
     public boolean delete(E key){
-        Node<E> nodeToDelete = find(key);
+        AVLNode<E> nodeToDelete = (AVLNode<E>) find(key);
         if (nodeToDelete == null){
             return false; // node not found
         }
         else {
-            AVLNode<E> startNode = (AVLNode<E>) doDelete(nodeToDelete);
-            while(startNode != null){
-                startNode.resetHeight();
-
-                if (!balanceOK(startNode.getBalance())){
-                    AVLNode<E> child, grandchild;
-                    if (height(startNode.getLeft()) > height(startNode.getRight())){
-                        child = startNode.getLeft();
-                    }
-                    else {
-                        child = startNode.getRight();
-                    }
-
-                    if (height(child.getLeft()) > height(child.getRight())){
-                        grandchild = child.getLeft();
-                    }
-                    else {
-                        grandchild = child.getRight();
-                    }
-
-                    balance(startNode, child, grandchild);
+            deleteNode(nodeToDelete);
+            return true;
+        }
+    }
+
+    // Delete a node of this tree that a search has already found
+    protected void deleteNode(AVLNode<E> nodeToDelete){
+        Node<E> removed = unlinkedBy(nodeToDelete);
+        AVLNode<E> startNode = (AVLNode<E>) doDelete(nodeToDelete, removed);
+        int walkLength = 0;
+        while(startNode != null){
+            walkLength++;
+            startNode.resetHeight();
+
+            if (!balanceOK(startNode.getBalance())){
+                AVLNode<E> child, grandchild;
+                if (height(startNode.getLeft()) > height(startNode.getRight())){
+                    child = startNode.getLeft();
+                }
+                else {
+                    child = startNode.getRight();
+                }
+
+                // On a tie the grandchild has to be on the same side as the
+                // child, a double rotation would leave the tree imbalanced
+                if (height(child.getLeft()) > height(child.getRight())
+                        || (height(child.getLeft()) == height(child.getRight())
+                            && child.isLeftChildOf(startNode))){
+                    grandchild = child.getLeft();
+                }
+                else {
+                    grandchild = child.getRight();
                 }
-                startNode = startNode.getParent();
+
+                balance(startNode, child, grandchild);
             }
-            return true;
+            startNode = startNode.getParent();
+        }
+        if (TreeMetrics.ENABLED){
+            metrics().deleteWalk(walkLength);
+        }
+        releaseNode(removed);
+    }
+
+    /* --- join-based set operations ---
+       After Blelloch, Ferizovic and Sun, "Just Join for Parallel Ordered
+       Sets" (SPAA 2016). Everything is built on joinNodes, which links two
+       subtrees and a node with a key between theirs. It walks down the
+       spine of the higher subtree and rotates only there, so it costs
+       O(|h(left) - h(right)| + 1). split cuts a subtree along the search
+       path of a key with joins. union, intersection and difference split
+       one operand by the root key of the other and recurse on the two
+       sides, which is O(m log(n/m + 1)) for trees of m <= n keys.
+
+       The two recursive calls work on disjoint subtrees, so in parallel
+       mode the bigger ones run as fork/join tasks.
+
+       The nodes of both operands are reused, so the operands are consumed:
+       the other tree is left empty. Both trees have to order keys the same
+       way.
+     */
+
+    // Below this many keys in both operands, a set operation does not fork
+    private static final int PARALLEL_SET_OP_THRESHOLD = 1 << 12;
+
+    private enum SetOperation { UNION, INTERSECTION, DIFFERENCE }
+
+    // A subtree cut into the keys before and after a key, and the node
+    // holding the key itself (null if there is none)
+    private static final class Split<E> {
+        AVLNode<E> left;
+        AVLNode<E> node;
+        AVLNode<E> right;
+
+        Split(AVLNode<E> left, AVLNode<E> node, AVLNode<E> right){
+            this.left = left;
+            this.node = node;
+            this.right = right;
+        }
+    }
+
+    /* Moves the keys >= key into a new tree, which is returned; this tree
+       keeps the keys < key. O(log n).
+     */
+    public AVLTree<E> split(E key){
+        Split<E> split = split(getRoot(), key);
+        AVLTree<E> greater = createTree();
+        greater.changeChild(null, null, split.node == null ? split.right
+                                                           : joinNodes(null, split.node, split.right));
+        changeChild(null, null, split.left);
+        return greater;
+    }
+
+    /* A tree with the keys of left, key and the keys of right. All keys of
+       left have to be smaller than key, and key smaller than all keys of
+       right. left and right are left empty. O(|h(left) - h(right)| + log n).
+     */
+    public static <E> AVLTree<E> join(AVLTree<E> left, E key, AVLTree<E> right){
+        if (left == right){
+            throw new IllegalArgumentException("Cannot join a tree with itself");
+        }
+        if ((!left.isEmpty() && left.compareKeys(left.last(), key) >= 0)
+                || (!right.isEmpty() && left.compareKeys(key, right.first()) >= 0)){
+            throw new IllegalArgumentException("All keys of left have to be smaller than key, " +
+                                               "and key smaller than all keys of right");
         }
+
+        AVLTree<E> result = left.createTree();
+        result.changeChild(null, null, joinNodes(left.getRoot(), left.createNode(key), right.getRoot()));
+        left.changeChild(null, null, null);
+        right.changeChild(null, null, null);
+        return result;
+    }
+
+    // This tree becomes the union of both trees, other is left empty
+    public void union(AVLTree<E> other){
+        union(other, false);
+    }
+
+    public void union(AVLTree<E> other, boolean parallel){
+        setOperation(SetOperation.UNION, other, parallel);
+    }
+
+    // This tree keeps the keys that are in both trees, other is left empty
+    public void intersection(AVLTree<E> other){
+        intersection(other, false);
+    }
+
+    public void intersection(AVLTree<E> other, boolean parallel){
+        setOperation(SetOperation.INTERSECTION, other, parallel);
     }
 
-    protected final static class AVLNode<E> extends BSTree.Node<E>{
+    // This tree keeps the keys that are not in other, other is left empty
+    public void difference(AVLTree<E> other){
+        difference(other, false);
+    }
+
+    public void difference(AVLTree<E> other, boolean parallel){
+        setOperation(SetOperation.DIFFERENCE, other, parallel);
+    }
+
+    private void setOperation(SetOperation operation, AVLTree<E> other, boolean parallel){
+        if (other == this){
+            if (operation == SetOperation.DIFFERENCE){
+                changeChild(null, null, null);
+            }
+            return;
+        }
+
+        SetOperationTask task = new SetOperationTask(operation, getRoot(), other.getRoot(), parallel);
+        AVLNode<E> root = parallel ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+        other.changeChild(null, null, null);
+        changeChild(null, null, root);
+    }
+
+    @SuppressWarnings("serial") // ForkJoin tasks are never serialized
+    private class SetOperationTask extends RecursiveTask<AVLNode<E>> {
+        private final SetOperation operation;
+        private final AVLNode<E> first;
+        private final AVLNode<E> second;
+        private final boolean parallel;
+
+        SetOperationTask(SetOperation operation, AVLNode<E> first, AVLNode<E> second, boolean parallel){
+            this.operation = operation;
+            this.first = first;
+            this.second = second;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected AVLNode<E> compute(){
+            switch (operation){
+                case UNION:
+                    return union();
+                case INTERSECTION:
+                    return intersection();
+                default:
+                    return difference();
+            }
+        }
+
+        // Runs the operation on both pairs of subtrees; the left one is
+        // forked if it is big enough. Returns {left result, right result}.
+        private AVLNode<E>[] both(AVLNode<E> left1, AVLNode<E> left2, AVLNode<E> right1, AVLNode<E> right2){
+            SetOperationTask leftTask = new SetOperationTask(operation, left1, left2, parallel);
+            SetOperationTask rightTask = new SetOperationTask(operation, right1, right2, parallel);
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            AVLNode<E>[] results = (AVLNode<E>[]) new AVLNode[2];
+            if (parallel && AVLNode.size(first) + AVLNode.size(second) > PARALLEL_SET_OP_THRESHOLD){
+                leftTask.fork();
+                results[1] = rightTask.compute();
+                results[0] = leftTask.join();
+            }
+            else {
+                results[0] = leftTask.compute();
+                results[1] = rightTask.compute();
+            }
+            return results;
+        }
+
+        private AVLNode<E> union(){
+            if (first == null){
+                return second;
+            }
+            if (second == null){
+                return first;
+            }
+            AVLNode<E> left = first.getLeft(), right = first.getRight();
+            Split<E> split = split(second, first.getKey());
+            AVLNode<E>[] results = both(left, split.left, right, split.right);
+            return joinNodes(results[0], first, results[1]);
+        }
+
+        private AVLNode<E> intersection(){
+            if (first == null || second == null){
+                return null;
+            }
+            AVLNode<E> left = first.getLeft(), right = first.getRight();
+            Split<E> split = split(second, first.getKey());
+            AVLNode<E>[] results = both(left, split.left, right, split.right);
+            return split.node != null ? joinNodes(results[0], first, results[1])
+                                      : joinWithoutNode(results[0], results[1]);
+        }
+
+        // first minus second
+        private AVLNode<E> difference(){
+            if (first == null || second == null){
+                return first;
+            }
+            AVLNode<E> left = second.getLeft(), right = second.getRight();
+            Split<E> split = split(first, second.getKey());
+            AVLNode<E>[] results = both(split.left, left, split.right, right);
+            return joinWithoutNode(results[0], results[1]);
+        }
+    }
+
+    // Cut the subtree of node by key
+    private Split<E> split(AVLNode<E> node, E key){
+        if (node == null){
+            return new Split<>(null, null, null);
+        }
+
+        AVLNode<E> left = node.getLeft(), right = node.getRight();
+        int cmpRes = compareKeys(node.getKey(), key);
+        if (cmpRes == 0){
+            return new Split<>(left, node, right);
+        }
+        else if (cmpRes > 0){
+            Split<E> split = split(left, key);
+            split.right = joinNodes(split.right, node, right);
+            return split;
+        }
+        else {
+            Split<E> split = split(right, key);
+            split.left = joinNodes(left, node, split.left);
+            return split;
+        }
+    }
+
+    // Subtree with the keys of left and right, all keys of left being smaller
+    private static <E> AVLNode<E> joinWithoutNode(AVLNode<E> left, AVLNode<E> right){
+        if (left == null){
+            return right;
+        }
+        Split<E> split = splitLast(left);
+        return joinNodes(split.left, split.node, right);
+    }
+
+    // Take the node with the largest key out of a subtree
+    private static <E> Split<E> splitLast(AVLNode<E> node){
+        AVLNode<E> left = node.getLeft(), right = node.getRight();
+        if (right == null){
+            return new Split<>(left, node, null);
+        }
+        Split<E> split = splitLast(right);
+        split.left = joinNodes(left, node, split.left);
+        return split;
+    }
+
+    // Subtree with the keys of left, node and right, which are in this order
+    private static <E> AVLNode<E> joinNodes(AVLNode<E> left, AVLNode<E> node, AVLNode<E> right){
+        if (height(left) > height(right) + 1){
+            return joinRight(left, node, right);
+        }
+        if (height(right) > height(left) + 1){
+            return joinLeft(left, node, right);
+        }
+        return linkNode(left, node, right);
+    }
+
+    // left is the higher one, so node and right go down its right spine
+    private static <E> AVLNode<E> joinRight(AVLNode<E> left, AVLNode<E> node, AVLNode<E> right){
+        AVLNode<E> leftLeft = left.getLeft(), leftRight = left.getRight();
+        if (height(leftRight) <= height(right) + 1){
+            AVLNode<E> joined = linkNode(leftRight, node, right);
+            if (height(joined) <= height(leftLeft) + 1){
+                return linkNode(leftLeft, left, joined);
+            }
+            return rotateLeft(linkNode(leftLeft, left, rotateRight(joined)));
+        }
+
+        AVLNode<E> joined = joinRight(leftRight, node, right);
+        AVLNode<E> result = linkNode(leftLeft, left, joined);
+        if (height(joined) <= height(leftLeft) + 1){
+            return result;
+        }
+        return rotateLeft(result);
+    }
+
+    // right is the higher one, so left and node go down its left spine
+    private static <E> AVLNode<E> joinLeft(AVLNode<E> left, AVLNode<E> node, AVLNode<E> right){
+        AVLNode<E> rightLeft = right.getLeft(), rightRight = right.getRight();
+        if (height(rightLeft) <= height(left) + 1){
+            AVLNode<E> joined = linkNode(left, node, rightLeft);
+            if (height(joined) <= height(rightRight) + 1){
+                return linkNode(joined, right, rightRight);
+            }
+            return rotateRight(linkNode(rotateLeft(joined), right, rightRight));
+        }
+
+        AVLNode<E> joined = joinLeft(left, node, rightLeft);
+        AVLNode<E> result = linkNode(joined, right, rightRight);
+        if (height(joined) <= height(rightRight) + 1){
+            return result;
+        }
+        return rotateRight(result);
+    }
+
+    private static <E> AVLNode<E> linkNode(AVLNode<E> left, AVLNode<E> node, AVLNode<E> right){
+        node.setLeft(left);
+        node.setRight(right);
+        if (left != null){
+            left.setParent(node);
+        }
+        if (right != null){
+            right.setParent(node);
+        }
+        node.resetHeight();
+        return node;
+    }
+
+    // Rotations of a subtree that is not linked into a tree (yet);
+    // they return the new root of the subtree
+    private static <E> AVLNode<E> rotateLeft(AVLNode<E> node){
+        AVLNode<E> right = node.getRight();
+        linkNode(node.getLeft(), node, right.getLeft());
+        return linkNode(node, right, right.getRight());
+    }
+
+    private static <E> AVLNode<E> rotateRight(AVLNode<E> node){
+        AVLNode<E> left = node.getLeft();
+        linkNode(left.getRight(), node, node.getRight());
+        return linkNode(left.getLeft(), left, node);
+    }
+
+    protected static class AVLNode<E> extends BSTree.Node<E>{
         private int height;
+        // number of nodes in the subtree, kept up to date with the height
+        private int size = 1;
 
         public static int height(AVLNode<?> node){
             return node == null ? 0 : node.getHeight();
         }
 
+        public static int size(AVLNode<?> node){
+            return node == null ? 0 : node.getSize();
+        }
+
         public static boolean balanceOK(int balance){
             return Math.abs(balance) <= 1;
         }
@@ -159,6 +606,10 @@ public class AVLTree<E> extends BSTree<E> {
             height = newHeight;
         }
 
+        public int getSize(){
+            return size;
+        }
+
         public AVLNode(E key, AVLNode<E> l, AVLNode<E> r, AVLNode<E> p){
             super(key, l, r, p);
         }
@@ -219,54 +670,7 @@ public class AVLTree<E> extends BSTree<E> {
 
         public void resetHeight() {
             setHeight(Math.max(height(getLeft()), height(getRight())) + 1);
-        }
-
-        public static void main(String[] args){
-            /* A simple comparison between Java SDK RedBlack trees
-               and our implementation of AVL trees.
-             */
-            long start = System.nanoTime();
-            AVLTree<Integer> avlTree = new AVLTree<>();
-
-            int i = 1, j = 10000000;
-            IntStream.range(i, j)
-                     .forEach(avlTree::insert);
-            long end = System.nanoTime();
-
-            long avlInsert = end - start;
-
-            Void v = null;
-            start = System.nanoTime();
-            TreeSet<Integer> javaMap = new TreeSet<>();
-            IntStream.range(i, j)
-                    .forEach(javaMap::add);
-            end = System.nanoTime();
-
-            long javaMapInsert = end-start;
-
-            System.out.println("AVL: " + (avlInsert / 1e9)  + ", JavaTreeMap: " + (javaMapInsert / 1e9));
-
-            int[] randomInts = new Random().ints(1000000)
-                                           .toArray();
-
-            avlTree = new AVLTree<>();
-            javaMap.clear();
-
-            start = System.nanoTime();
-            for (int num : randomInts) {
-                avlTree.insert(num);
-            }
-            end = System.nanoTime();
-            avlInsert = end - start;
-
-            start = System.nanoTime();
-            for (int num : randomInts) {
-                javaMap.add(num);
-            }
-            end = System.nanoTime();
-            javaMapInsert = end - start;
-
-            System.out.println("AVL: " + (avlInsert / 1e9)  + ", JavaTreeMap: " + (javaMapInsert / 1e9));
+            size = size(getLeft()) + size(getRight()) + 1;
         }
     }
 }
@@ -0,0 +1,128 @@
+package trees;
+
+import java.util.Arrays;
+
+/* Node storage for the primitive-keyed AVL trees: one slot per node in
+   parallel arrays, so a node costs 3 ints of links and a byte of height
+   (AVL heights stay far below 128) plus whatever the key array takes.
+   Slots of deleted nodes are kept on a free list threaded through left[].
+ */
+public abstract class ArrayAVLTree extends HandleAVLTree {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    int[] left;
+    int[] right;
+    int[] parent;
+    byte[] height;
+
+    // next never used slot and head of the list of freed slots
+    private int nextSlot;
+    private int freeList = NIL;
+
+    protected ArrayAVLTree(int initialCapacity){
+        if (initialCapacity < 0){
+            throw new IllegalArgumentException("initialCapacity must not be negative");
+        }
+        int capacity = Math.max(initialCapacity, 1);
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        height = new byte[capacity];
+    }
+
+    protected ArrayAVLTree(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Resize the key storage to newCapacity slots
+    abstract void growKeys(int newCapacity);
+
+    public void clear(){
+        root = NIL;
+        size = 0;
+        nextSlot = 0;
+        freeList = NIL;
+    }
+
+    @Override
+    final int getLeft(int node){
+        return left[node];
+    }
+
+    @Override
+    final void setLeft(int node, int l){
+        left[node] = l;
+    }
+
+    @Override
+    final int getRight(int node){
+        return right[node];
+    }
+
+    @Override
+    final void setRight(int node, int r){
+        right[node] = r;
+    }
+
+    @Override
+    final int getParent(int node){
+        return parent[node];
+    }
+
+    @Override
+    final void setParent(int node, int p){
+        parent[node] = p;
+    }
+
+    @Override
+    final int getHeight(int node){
+        return height[node];
+    }
+
+    @Override
+    final void setHeight(int node, int h){
+        height[node] = (byte) h;
+    }
+
+    @Override
+    final int allocateNode(){
+        int node;
+        if (freeList != NIL){
+            node = freeList;
+            freeList = left[node];
+        }
+        else {
+            if (nextSlot == left.length){
+                grow();
+            }
+            node = nextSlot++;
+        }
+
+        left[node] = NIL;
+        right[node] = NIL;
+        parent[node] = NIL;
+        height[node] = 1;
+        return node;
+    }
+
+    @Override
+    final void freeNode(int node){
+        left[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow(){
+        int oldCapacity = left.length;
+        if (oldCapacity == MAX_CAPACITY){
+            throw new IllegalStateException("Tree is full");
+        }
+        int newCapacity = (int) Math.min(MAX_CAPACITY, oldCapacity + (oldCapacity >> 1) + 1L);
+
+        left = Arrays.copyOf(left, newCapacity);
+        right = Arrays.copyOf(right, newCapacity);
+        parent = Arrays.copyOf(parent, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        growKeys(newCapacity);
+    }
+}
@@ -0,0 +1,443 @@
+package trees;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/* B+tree: an ordered set that keeps up to fanout - 1 keys per node in an
+   array, so a lookup touches about log_fanout(n) nodes instead of log2(n)
+   scattered BSTree nodes. All keys live in the leaves, which are linked
+   in key order, so range scans just walk the leaves. Inner nodes only
+   hold separators: keys[i] is <= every key below children[i + 1] and
+   > every key below children[i].
+
+   Within a node the keys are binary searched; the keys are objects that
+   are compared through compareTo/compare, so a linear scan would not be
+   vectorized and only costs more comparisons.
+
+   Every node but the root has at least (fanout - 1) / 2 keys. A deleted
+   key may stay behind as a separator in an inner node, which is fine as
+   it still separates the same subtrees.
+ */
+public class BPlusTree<E> implements Iterable<E> {
+    public static final int DEFAULT_FANOUT = 64;
+
+    private final Comparator<E> cmp;
+    private final int maxKeys;
+    private final int minKeys;
+
+    private Node root;
+    // leftmost leaf; merges always keep the left node, so it never goes away
+    private final Leaf head;
+    private int size;
+
+    // Set by insert when a node was split: the new right sibling and the
+    // separator that goes to the parent
+    private Node splitSibling;
+    private Object splitKey;
+
+    // The arrays have room for one key (and child) more than allowed, so a
+    // node can overflow before it is split
+    private abstract static class Node {
+        final Object[] keys;
+        int count;
+
+        Node(int maxKeys){
+            keys = new Object[maxKeys + 1];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        Leaf next;
+
+        Leaf(int maxKeys){
+            super(maxKeys);
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children;
+
+        Inner(int maxKeys){
+            super(maxKeys);
+            children = new Node[maxKeys + 2];
+        }
+    }
+
+    public BPlusTree(int fanout, Comparator<E> cmp){
+        if (fanout < 4){
+            throw new IllegalArgumentException("Fanout has to be at least 4, got " + fanout);
+        }
+        this.cmp = cmp;
+        this.maxKeys = fanout - 1;
+        this.minKeys = maxKeys / 2;
+        this.head = new Leaf(maxKeys);
+        this.root = head;
+    }
+
+    public BPlusTree(int fanout){
+        this(fanout, null);
+    }
+
+    public BPlusTree(Comparator<E> cmp){
+        this(DEFAULT_FANOUT, cmp);
+    }
+
+    public BPlusTree(){
+        this(DEFAULT_FANOUT, null);
+    }
+
+    private int compareKeys(E key1, E key2){
+        return Keys.compare(cmp, key1, key2);
+    }
+
+    // Index of key in the node, or -(insertion point) - 1 if it is not
+    // there, like Arrays.binarySearch
+    @SuppressWarnings("unchecked")
+    private int search(Node node, E key){
+        int lo = 0, hi = node.count - 1;
+        while (lo <= hi){
+            int mid = (lo + hi) >>> 1;
+            int cmpRes = compareKeys((E) node.keys[mid], key);
+            if (cmpRes == 0){
+                return mid;
+            }
+            else if (cmpRes > 0){
+                hi = mid - 1;
+            }
+            else {
+                lo = mid + 1;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // Index of the child of an inner node whose subtree may hold key
+    private int childIndex(Inner node, E key){
+        int i = search(node, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private Leaf findLeaf(E key){
+        Node node = root;
+        while (node instanceof Inner){
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) node;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    // The key in the tree that is equal to key, or null
+    @SuppressWarnings("unchecked")
+    public E find(E key){
+        Leaf leaf = findLeaf(key);
+        int i = search(leaf, key);
+        return i >= 0 ? (E) leaf.keys[i] : null;
+    }
+
+    public boolean contains(E key){
+        return find(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E first(){
+        return size == 0 ? null : (E) head.keys[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E last(){
+        if (size == 0){
+            return null;
+        }
+        Node node = root;
+        while (node instanceof Inner){
+            node = ((Inner) node).children[node.count];
+        }
+        return (E) node.keys[node.count - 1];
+    }
+
+    public boolean insert(E key){
+        if (!insert(root, key)){
+            return false;
+        }
+        if (splitSibling != null){
+            // the root was split, the tree grows by one level
+            Inner newRoot = new Inner(maxKeys);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitSibling;
+            newRoot.count = 1;
+            root = newRoot;
+            splitSibling = null;
+            splitKey = null;
+        }
+        size++;
+        return true;
+    }
+
+    private boolean insert(Node node, E key){
+        if (node instanceof Leaf){
+            Leaf leaf = (Leaf) node;
+            int i = search(leaf, key);
+            if (i >= 0){
+                return false; // key already present
+            }
+            i = -i - 1;
+            System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.count - i);
+            leaf.keys[i] = key;
+            leaf.count++;
+            if (leaf.count > maxKeys){
+                splitLeaf(leaf);
+            }
+            return true;
+        }
+
+        Inner inner = (Inner) node;
+        int i = childIndex(inner, key);
+        if (!insert(inner.children[i], key)){
+            return false;
+        }
+        if (splitSibling != null){
+            Node sibling = splitSibling;
+            Object separator = splitKey;
+            splitSibling = null;
+            splitKey = null;
+
+            System.arraycopy(inner.keys, i, inner.keys, i + 1, inner.count - i);
+            System.arraycopy(inner.children, i + 1, inner.children, i + 2, inner.count - i);
+            inner.keys[i] = separator;
+            inner.children[i + 1] = sibling;
+            inner.count++;
+            if (inner.count > maxKeys){
+                splitInner(inner);
+            }
+        }
+        return true;
+    }
+
+    // The upper half goes to a new leaf; its first key is the separator
+    private void splitLeaf(Leaf leaf){
+        Leaf right = new Leaf(maxKeys);
+        int half = leaf.count / 2;
+        right.count = leaf.count - half;
+        System.arraycopy(leaf.keys, half, right.keys, 0, right.count);
+        Arrays.fill(leaf.keys, half, leaf.count, null);
+        leaf.count = half;
+
+        right.next = leaf.next;
+        leaf.next = right;
+
+        splitSibling = right;
+        splitKey = right.keys[0];
+    }
+
+    // The middle key moves up, the keys and children after it go to a new node
+    private void splitInner(Inner inner){
+        Inner right = new Inner(maxKeys);
+        int mid = inner.count / 2;
+        right.count = inner.count - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.count);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.count + 1);
+
+        splitSibling = right;
+        splitKey = inner.keys[mid];
+
+        Arrays.fill(inner.keys, mid, inner.count, null);
+        Arrays.fill(inner.children, mid + 1, inner.count + 1, null);
+        inner.count = mid;
+    }
+
+    public boolean delete(E key){
+        if (!delete(root, key)){
+            return false; // key not found
+        }
+        if (root instanceof Inner && root.count == 0){
+            // the root lost its last separator, the tree shrinks by one level
+            root = ((Inner) root).children[0];
+        }
+        size--;
+        return true;
+    }
+
+    private boolean delete(Node node, E key){
+        if (node instanceof Leaf){
+            int i = search(node, key);
+            if (i < 0){
+                return false;
+            }
+            System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+            node.keys[--node.count] = null;
+            return true;
+        }
+
+        Inner inner = (Inner) node;
+        int i = childIndex(inner, key);
+        if (!delete(inner.children[i], key)){
+            return false;
+        }
+        if (inner.children[i].count < minKeys){
+            fixUnderflow(inner, i);
+        }
+        return true;
+    }
+
+    // children[i] of parent has too few keys: borrow one from a sibling
+    // that can spare one, or merge it with a sibling
+    private void fixUnderflow(Inner parent, int i){
+        Node child = parent.children[i];
+        Node left = i > 0 ? parent.children[i - 1] : null;
+        Node right = i < parent.count ? parent.children[i + 1] : null;
+
+        if (left != null && left.count > minKeys){
+            borrowFromLeft(parent, i, left, child);
+        }
+        else if (right != null && right.count > minKeys){
+            borrowFromRight(parent, i, child, right);
+        }
+        else if (left != null){
+            merge(parent, i - 1);
+        }
+        else {
+            merge(parent, i);
+        }
+    }
+
+    private void borrowFromLeft(Inner parent, int i, Node left, Node child){
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        if (child instanceof Leaf){
+            child.keys[0] = left.keys[left.count - 1];
+            parent.keys[i - 1] = child.keys[0];
+        }
+        else {
+            Inner innerChild = (Inner) child, innerLeft = (Inner) left;
+            System.arraycopy(innerChild.children, 0, innerChild.children, 1, child.count + 1);
+            child.keys[0] = parent.keys[i - 1];
+            innerChild.children[0] = innerLeft.children[left.count];
+            innerLeft.children[left.count] = null;
+            parent.keys[i - 1] = left.keys[left.count - 1];
+        }
+        child.count++;
+        left.keys[--left.count] = null;
+    }
+
+    private void borrowFromRight(Inner parent, int i, Node child, Node right){
+        if (child instanceof Leaf){
+            child.keys[child.count] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+            parent.keys[i] = right.keys[0];
+        }
+        else {
+            Inner innerChild = (Inner) child, innerRight = (Inner) right;
+            child.keys[child.count] = parent.keys[i];
+            innerChild.children[child.count + 1] = innerRight.children[0];
+            parent.keys[i] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+            System.arraycopy(innerRight.children, 1, innerRight.children, 0, right.count);
+            innerRight.children[right.count] = null;
+        }
+        child.count++;
+        right.keys[--right.count] = null;
+    }
+
+    // Move children[j + 1] of parent into children[j] and drop it
+    private void merge(Inner parent, int j){
+        Node left = parent.children[j];
+        Node right = parent.children[j + 1];
+
+        if (left instanceof Leaf){
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            ((Leaf) left).next = ((Leaf) right).next;
+        }
+        else {
+            // the separator comes down between the two halves
+            left.keys[left.count] = parent.keys[j];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(((Inner) right).children, 0, ((Inner) left).children, left.count + 1,
+                             right.count + 1);
+            left.count += right.count + 1;
+        }
+
+        System.arraycopy(parent.keys, j + 1, parent.keys, j, parent.count - j - 1);
+        System.arraycopy(parent.children, j + 2, parent.children, j + 1, parent.count - j - 1);
+        parent.count--;
+        parent.keys[parent.count] = null;
+        parent.children[parent.count + 1] = null;
+    }
+
+    /* Iteration walks the linked leaves. A range [from, to) starts with
+       one descent to the leaf of from; a null bound means no bound.
+       The tree must not be changed while an iterator is in use.
+     */
+    @Override
+    public Iterator<E> iterator(){
+        return new LeafIterator(head, 0, null);
+    }
+
+    public Iterator<E> iterator(E from, E to){
+        if (from == null){
+            return new LeafIterator(head, 0, to);
+        }
+        Leaf leaf = findLeaf(from);
+        int i = search(leaf, from);
+        return new LeafIterator(leaf, i >= 0 ? i : -i - 1, to);
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (E key : this){
+            f.apply(key);
+        }
+    }
+
+    private class LeafIterator implements Iterator<E> {
+        private Leaf leaf;
+        private int idx;
+        private final E to;
+
+        LeafIterator(Leaf leaf, int idx, E to){
+            this.leaf = leaf;
+            this.idx = idx;
+            this.to = to;
+            advance();
+        }
+
+        // Move to the next key if the current leaf is used up, and stop
+        // at the end of the range
+        @SuppressWarnings("unchecked")
+        private void advance(){
+            while (leaf != null && idx == leaf.count){
+                leaf = leaf.next;
+                idx = 0;
+            }
+            if (leaf != null && to != null && compareKeys((E) leaf.keys[idx], to) >= 0){
+                leaf = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next(){
+            if (leaf == null){
+                throw new NoSuchElementException();
+            }
+            E key = (E) leaf.keys[idx++];
+            advance();
+            return key;
+        }
+    }
+}
@@ -1,10 +1,27 @@
 package trees;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /* General Binary Search Tree */
-public class BSTree<E> {
+public class BSTree<E> implements Iterable<E> {
     private Comparator<E> cmp;
 
     // We will either provide Comparator object or
@@ -13,6 +30,7 @@ public class BSTree<E> {
     // on integers
     public BSTree(Comparator<E> cmp){
         this.cmp = cmp;
+        this.keyOrder = cmp != null ? ORDER_COMPARATOR : ORDER_UNRESOLVED;
     }
     public BSTree(){
         this(null);
@@ -93,6 +111,10 @@ public class BSTree<E> {
         private Node<E> right;
         private Node<E> parent;
 
+        protected E getKey() {
+            return key;
+        }
+
         protected Node<E> getLeft() {
             return left;
         }
@@ -120,19 +142,73 @@ public class BSTree<E> {
 
     private Node<E> root;
 
+    // null unless TreeMetrics.ENABLED
+    private final TreeMetrics metrics = TreeMetrics.ENABLED ? new TreeMetrics() : null;
+
+    // The metrics of this tree, or null if the JVM runs without -Dtrees.metrics=true
+    public TreeMetrics metrics(){
+        return metrics;
+    }
+
+    /* How compareKeys compares. With natural ordering the key class is
+       only known once there are keys, so it is resolved from the first key
+       compared. Integer, Long and String keys then get a branch of their
+       own calling the final class directly, so those call sites stay
+       monomorphic however many other key types and comparators the rest
+       of the program uses. A key of another class showing up later drops
+       the tree to the plain Comparable path for good.
+     */
+    private static final int ORDER_UNRESOLVED = 0;
+    private static final int ORDER_COMPARATOR = 1;
+    private static final int ORDER_INTEGER = 2;
+    private static final int ORDER_LONG = 3;
+    private static final int ORDER_STRING = 4;
+    private static final int ORDER_COMPARABLE = 5;
+
+    private int keyOrder;
+
+    private static int naturalOrderOf(Object key){
+        if (key instanceof Integer){
+            return ORDER_INTEGER;
+        }
+        else if (key instanceof Long){
+            return ORDER_LONG;
+        }
+        else if (key instanceof String){
+            return ORDER_STRING;
+        }
+        return ORDER_COMPARABLE;
+    }
+
     protected int compareKeys(E key1, E key2){
-        if (cmp != null){
+        if (TreeMetrics.ENABLED){
+            metrics.comparison();
+        }
+        int order = keyOrder;
+        if (order == ORDER_COMPARATOR){
             return cmp.compare(key1, key2);
         }
-        else{
-            try{
-                return ((Comparable<E>) key1).compareTo(key2);
-            }
-            catch(ClassCastException e){
-                throw new IllegalArgumentException("Keys must either implement Comparable<E> " +
-                                                   "or a Comparator<E> has to be given ");
+        if (order == ORDER_UNRESOLVED){
+            order = keyOrder = naturalOrderOf(key1);
+        }
+        if (order == ORDER_COMPARABLE){
+            return Keys.compareComparable(key1, key2);
+        }
+        try{
+            switch (order){
+                case ORDER_INTEGER:
+                    return Integer.compare((Integer) key1, (Integer) key2);
+                case ORDER_LONG:
+                    return Long.compare((Long) key1, (Long) key2);
+                default:
+                    return ((String) key1).compareTo((String) key2);
             }
         }
+        catch(ClassCastException e){
+            // not all keys are of the class of the first one
+            keyOrder = ORDER_COMPARABLE;
+            return Keys.compareComparable(key1, key2);
+        }
     }
 
     // Set the oldChild of the parent to be the newChild and
@@ -189,40 +265,57 @@ public class BSTree<E> {
             return false; // node not found
         }
         else {
-            doDelete(nodeToDelete);
+            Node<E> removed = unlinkedBy(nodeToDelete);
+            doDelete(nodeToDelete, removed);
+            releaseNode(removed);
             return true;
         }
     }
 
     protected Node<E> doDelete(Node<E> nodeToDelete){
-        if (nodeToDelete.getLeft() == null && nodeToDelete.getRight() == null){
-            if (nodeToDelete.isLeftChildOf(nodeToDelete.getParent())){
-                nodeToDelete.getParent().setLeft(null);
-            }
-            else if (nodeToDelete.isRightChildOf(nodeToDelete.getParent())) {
-                nodeToDelete.getParent().setRight(null);
-            }
-            else if (nodeToDelete == root){
-                root = null;
-            }
+        return doDelete(nodeToDelete, unlinkedBy(nodeToDelete));
+    }
 
-            return nodeToDelete.getParent();
+    /* Delete nodeToDelete, given removed = unlinkedBy(nodeToDelete), so a
+       caller that needs the removed node does not walk down to the
+       successor twice. Returns the node rebalancing starts from: the child
+       that took the place of removed, or its parent if it had none.
+     */
+    protected Node<E> doDelete(Node<E> nodeToDelete, Node<E> removed){
+        Node<E> child = removed.getLeft() != null ? removed.getLeft() : removed.getRight();
+        Node<E> parent = removed.getParent();
+        if (child != null){
+            changeChild(parent, removed, child);
         }
-        else if (nodeToDelete.getLeft() != null && nodeToDelete.getRight() == null) {
-            changeChild(nodeToDelete.getParent(), nodeToDelete, nodeToDelete.getLeft());
-            return nodeToDelete.getLeft();
+        else if (removed.isLeftChildOf(parent)){
+            parent.setLeft(null);
         }
-        else if (nodeToDelete.getLeft() == null && nodeToDelete.getRight() != null) {
-            changeChild(nodeToDelete.getParent(), nodeToDelete, nodeToDelete.getRight());
-            return nodeToDelete.getRight();
+        else if (removed.isRightChildOf(parent)){
+            parent.setRight(null);
+        }
+        else if (removed == root){
+            root = null;
         }
-        else { // has both children
-            Node<E> newNodeToDelete = subtreeMin(nodeToDelete.getRight());
-            Node<E> nodeToReturn = doDelete(newNodeToDelete); // it is a leaf, so it will be run only once
-            nodeToDelete.key = newNodeToDelete.key;
 
-            return nodeToReturn;
+        if (removed != nodeToDelete){ // nodeToDelete had both children
+            moveEntry(removed, nodeToDelete);
         }
+        return child != null ? child : parent;
+    }
+
+    // The node doDelete takes out of the tree: nodeToDelete itself, or its
+    // successor if it has both children (nodeToDelete then gets its key)
+    protected Node<E> unlinkedBy(Node<E> nodeToDelete){
+        if (nodeToDelete.getLeft() != null && nodeToDelete.getRight() != null){
+            return subtreeMin(nodeToDelete.getRight());
+        }
+        return nodeToDelete;
+    }
+
+    // Move the key of a node that is taken out of the tree to the node that
+    // stays in its place; subclasses with more in a node (a value) move it too
+    protected void moveEntry(Node<E> from, Node<E> to){
+        to.key = from.key;
     }
 
     public boolean isEmpty(){
@@ -231,8 +324,10 @@ public class BSTree<E> {
 
     public Node<E> find(E key){
         Node<E> tmp = root;
+        int pathLength = 0;
 
         while(tmp != null){
+            pathLength++;
             int cmpRes = compareKeys(tmp.key, key);
             if (cmpRes == 0){
                 break;
@@ -245,11 +340,641 @@ public class BSTree<E> {
             }
         }
 
+        if (TreeMetrics.ENABLED){
+            metrics.searchPath(pathLength);
+        }
         return tmp;
     }
+    /* Navigation in the style of java.util.NavigableSet. All of them return
+       null if there is no such key.
+     */
+
+    // Smallest key in the tree
+    public E first(){
+        return keyOf(subtreeMin(root));
+    }
+
+    // Largest key in the tree
+    public E last(){
+        return keyOf(subtreeMax(root));
+    }
+
+    // Largest key <= key
+    public E floor(E key){
+        return keyOf(floorNode(key, true));
+    }
+
+    // Smallest key >= key
+    public E ceiling(E key){
+        return keyOf(ceilingNode(key, true));
+    }
+
+    // Largest key < key
+    public E lower(E key){
+        return keyOf(floorNode(key, false));
+    }
+
+    // Smallest key > key
+    public E higher(E key){
+        return keyOf(ceilingNode(key, false));
+    }
+
+    private static <E> E keyOf(Node<E> node){
+        return node == null ? null : node.key;
+    }
+
+    // Node with the largest key below key (or equal to it, if inclusive)
+    private Node<E> floorNode(E key, boolean inclusive){
+        Node<E> tmp = root;
+        Node<E> best = null;
+        while (tmp != null){
+            int cmpRes = compareKeys(tmp.key, key);
+            if (cmpRes < 0 || (cmpRes == 0 && inclusive)){
+                best = tmp;
+                tmp = tmp.getRight();
+            }
+            else {
+                tmp = tmp.getLeft();
+            }
+        }
+        return best;
+    }
+
+    // Node with the smallest key above key (or equal to it, if inclusive)
+    protected Node<E> ceilingNode(E key, boolean inclusive){
+        Node<E> tmp = root;
+        Node<E> best = null;
+        while (tmp != null){
+            int cmpRes = compareKeys(tmp.key, key);
+            if (cmpRes > 0 || (cmpRes == 0 && inclusive)){
+                best = tmp;
+                tmp = tmp.getLeft();
+            }
+            else {
+                tmp = tmp.getRight();
+            }
+        }
+        return best;
+    }
+
+    /* Lazy iteration in increasing order. The iterators follow parent links
+       from node to node, so they need no stack, finding the first key is
+       O(log n) and every further key is O(1) amortized. A range [from, to)
+       only visits the keys inside it; a null bound means no bound.
+       The tree must not be changed while an iterator is in use.
+     */
+    @Override
+    public Iterator<E> iterator(){
+        return iterator(null, null);
+    }
+
+    public Iterator<E> iterator(E from, E to){
+        return new RangeIterator(from == null ? subtreeMin(root) : ceilingNode(from, true), to);
+    }
+
+    @Override
+    public Spliterator<E> spliterator(){
+        return spliterator(null, null);
+    }
+
+    public Spliterator<E> spliterator(E from, E to){
+        Node<E> first = from == null ? subtreeMin(root) : ceilingNode(from, true);
+        Node<E> fence = to == null ? null : ceilingNode(to, true);
+        if (from != null && to != null && compareKeys(from, to) >= 0){
+            first = fence = null;
+        }
+        return new TreeSpliterator(first, fence, 0);
+    }
+
+    public Stream<E> stream(){
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<E> parallelStream(){
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // The keys in [from, to) as a sequential stream
+    public Stream<E> stream(E from, E to){
+        return StreamSupport.stream(spliterator(from, to), false);
+    }
+
+    /* Number of keys before node in key order (the size of the tree for
+       null), for trees that keep subtree sizes; -1 if the tree does not
+       know it. Lets the spliterators report exact sizes.
+     */
+    protected long indexOf(Node<E> node){
+        return -1;
+    }
+
+    /* Spliterator over the nodes from current up to, but not including,
+       fence (null: to the end), in the style of the one of
+       java.util.TreeMap. trySplit hands off the keys before a node in the
+       middle of the range: the highest node inside the range the first
+       time, and after that a child of the node the last split was at,
+       so the parts follow the shape of the tree and stay balanced for a
+       balanced tree. Sizes are exact if the tree keeps subtree sizes and
+       halved at every split otherwise.
+     */
+    private class TreeSpliterator implements Spliterator<E> {
+        private Node<E> current;
+        private final Node<E> fence;
+        // 0 before the first split, 1 if this part kept the right of a
+        // split, -1 if it is the left part handed off
+        private int side;
+        private long est;
+        private final boolean exact;
+
+        TreeSpliterator(Node<E> current, Node<E> fence, int side){
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            long from = indexOf(current == null ? fence : current);
+            this.exact = from >= 0;
+            if (exact){
+                this.est = indexOf(fence) - from;
+            }
+            else {
+                this.est = current == null || current == fence ? 0 : Long.MAX_VALUE;
+            }
+        }
+
+        private TreeSpliterator(Node<E> current, Node<E> fence, int side, long est, boolean exact){
+            this.current = current;
+            this.fence = fence;
+            this.side = side;
+            this.est = est;
+            this.exact = exact;
+        }
+
+        private boolean before(Node<E> a, Node<E> b){
+            return b == null || compareKeys(a.key, b.key) < 0;
+        }
+
+        @Override
+        public Spliterator<E> trySplit(){
+            Node<E> first = current;
+            if (first == null || first == fence){
+                return null;
+            }
+
+            Node<E> split;
+            if (side == 0){
+                // highest node strictly inside the range
+                split = root;
+                while (split != null && !(before(first, split) && before(split, fence))){
+                    split = before(first, split) ? split.getLeft() : split.getRight();
+                }
+            }
+            else if (side > 0){
+                split = first.getRight();
+            }
+            else {
+                split = fence == null ? null : fence.getLeft();
+            }
+            if (split == null || split == fence || !before(first, split) || !before(split, fence)){
+                return null;
+            }
+
+            long prefix;
+            if (exact){
+                prefix = indexOf(split) - indexOf(first);
+                est -= prefix;
+            }
+            else {
+                prefix = est >>>= 1;
+            }
+            side = 1;
+            current = split;
+            return new TreeSpliterator(first, split, -1, prefix, exact);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action){
+            Node<E> node = current;
+            if (node == null || node == fence){
+                return false;
+            }
+            current = successor(node);
+            if (exact){
+                est--;
+            }
+            action.accept(node.key);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action){
+            Node<E> node = current;
+            current = fence;
+            while (node != null && node != fence){
+                action.accept(node.key);
+                node = successor(node);
+            }
+            if (exact){
+                est = 0;
+            }
+        }
+
+        @Override
+        public long estimateSize(){
+            return est;
+        }
+
+        @Override
+        public int characteristics(){
+            int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT;
+            if (exact){
+                characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+            }
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator(){
+            return cmp;
+        }
+    }
+
+    private class RangeIterator implements Iterator<E> {
+        private Node<E> next;
+        private final E to;
+
+        RangeIterator(Node<E> first, E to){
+            this.to = to;
+            this.next = first;
+            skipIfPastEnd();
+        }
+
+        private void skipIfPastEnd(){
+            if (next != null && to != null && compareKeys(next.key, to) >= 0){
+                next = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next != null;
+        }
+
+        @Override
+        public E next(){
+            if (next == null){
+                throw new NoSuchElementException();
+            }
+            E key = next.key;
+            next = successor(next);
+            skipIfPastEnd();
+            return key;
+        }
+    }
+
     public boolean insert(E key){
-        Node<E> toInsert = new Node<E>(key);
-        return doInsert(toInsert);
+        Node<E> toInsert = obtainNode(key);
+        boolean success = doInsert(toInsert);
+        if (!success){
+            releaseNode(toInsert);
+        }
+        return success;
+    }
+
+    // Subclasses with their own kind of node override this
+    protected Node<E> createNode(E key){
+        return new Node<E>(key);
+    }
+
+    /* --- node pool ---
+       Off by default. With a pool, the nodes that delete takes out of the
+       tree (up to maxPooled of them) are kept on a free list, linked
+       through their parent field, and insert reuses them instead of
+       allocating, so a steady mix of inserts and deletes creates no
+       garbage. The flip side is that a Node returned by find() may be
+       reused for another key once its key is deleted.
+     */
+    private Node<E> pool;
+    private int pooled;
+    private int maxPooled;
+
+    public void enableNodePool(int maxPooled){
+        if (maxPooled < 0){
+            throw new IllegalArgumentException("Pool size cannot be negative, got " + maxPooled);
+        }
+        this.maxPooled = maxPooled;
+        while (pooled > maxPooled){
+            pool = pool.getParent();
+            pooled--;
+        }
+    }
+
+    public void disableNodePool(){
+        enableNodePool(0);
+    }
+
+    // A node for key: a pooled one if there is any, a new one otherwise
+    protected Node<E> obtainNode(E key){
+        Node<E> node = pool;
+        if (node == null){
+            return createNode(key);
+        }
+        pool = node.getParent();
+        pooled--;
+        node.key = key;
+        node.setParent(null);
+        initNode(node);
+        return node;
+    }
+
+    // Hand a node that is no longer in the tree back to the pool
+    protected void releaseNode(Node<E> node){
+        if (pooled < maxPooled){
+            node.key = null;
+            node.setLeft(null);
+            node.setRight(null);
+            node.setParent(pool);
+            pool = node;
+            pooled++;
+        }
+    }
+
+    // Reset whatever a subclass keeps in a node before it is reused for
+    // a new key; the key is set and the links are null
+    protected void initNode(Node<E> node){
+    }
+
+    // Recompute whatever a subclass keeps in a node from its children
+    // (e.g. the AVL height); called bottom-up when a tree is built in bulk
+    protected void resetNode(Node<E> node){
+    }
+
+    /* Replace the contents of the tree with the given keys, which must be
+       in increasing order without duplicates. The keys become a perfectly
+       balanced tree in one linear pass, without any comparisons beyond
+       checking the order and without rotations.
+     */
+    public void buildFromSorted(E[] sortedKeys){
+        buildFromSorted(Arrays.asList(sortedKeys).iterator(), sortedKeys.length);
+    }
+
+    public void buildFromSorted(Iterator<? extends E> sortedKeys){
+        buildFromSorted(sortedKeys, 16);
+    }
+
+    public void buildFromSorted(Stream<? extends E> sortedKeys){
+        buildFromSorted(sortedKeys.iterator());
+    }
+
+    // The keys go straight into nodes, without a copy of them in between
+    private void buildFromSorted(Iterator<? extends E> sortedKeys, int expectedSize){
+        List<Node<E>> nodes = new ArrayList<>(expectedSize);
+        E previous = null;
+        while (sortedKeys.hasNext()){
+            E key = sortedKeys.next();
+            if (!nodes.isEmpty() && compareKeys(previous, key) >= 0){
+                throw new IllegalArgumentException("Keys must be in increasing order without duplicates");
+            }
+            nodes.add(createNode(key));
+            previous = key;
+        }
+        changeChild(null, null, linkBalanced(nodes, 0, nodes.size()));
+    }
+
+    /* Link nodes[from, to), which are in key order, into a perfectly
+       balanced subtree and return its root. Only the links inside the
+       subtree are set, the parent of the returned root is left alone.
+     */
+    protected Node<E> linkBalanced(List<Node<E>> nodes, int from, int to){
+        if (from >= to){
+            return null;
+        }
+
+        int mid = (from + to) >>> 1;
+        Node<E> node = nodes.get(mid);
+        Node<E> left = linkBalanced(nodes, from, mid);
+        Node<E> right = linkBalanced(nodes, mid + 1, to);
+
+        return link(node, left, right);
+    }
+
+    private Node<E> link(Node<E> node, Node<E> left, Node<E> right){
+        node.setLeft(left);
+        node.setRight(right);
+        if (left != null){
+            left.setParent(node);
+        }
+        if (right != null){
+            right.setParent(node);
+        }
+        resetNode(node);
+        return node;
+    }
+
+    /* Add a batch of keys in increasing order (keys already in the tree are
+       skipped) by merging them with the nodes of the tree and relinking
+       everything into a balanced tree. Existing nodes are reused, so only
+       the new keys allocate. This is O(n + m) for a tree of n keys and a
+       batch of m, so it beats m inserts once m log n is not small compared
+       to n; below that the keys are inserted one by one instead. Returns
+       the number of keys that were added.
+     */
+    public int insertAllSorted(Iterator<? extends E> sortedKeys){
+        List<E> batch = new ArrayList<>();
+        while (sortedKeys.hasNext()){
+            E key = sortedKeys.next();
+            if (!batch.isEmpty() && compareKeys(batch.get(batch.size() - 1), key) >= 0){
+                throw new IllegalArgumentException("Keys must be in increasing order without duplicates");
+            }
+            batch.add(key);
+        }
+
+        int inserted = 0;
+        if (insertsAreCheaper(batch.size())){
+            for (E key : batch){
+                if (insert(key)){
+                    inserted++;
+                }
+            }
+            return inserted;
+        }
+
+        List<Node<E>> merged = new ArrayList<>();
+        Node<E> existing = subtreeMin(root);
+        for (E key : batch){
+            int cmpRes = -1;
+            while (existing != null && (cmpRes = compareKeys(existing.key, key)) < 0){
+                merged.add(existing);
+                existing = successor(existing);
+            }
+            if (existing != null && cmpRes == 0){
+                continue; // key already present
+            }
+            merged.add(createNode(key));
+            inserted++;
+        }
+
+        if (inserted > 0){
+            while (existing != null){
+                merged.add(existing);
+                existing = successor(existing);
+            }
+            changeChild(null, null, linkBalanced(merged, 0, merged.size()));
+        }
+        return inserted;
+    }
+
+    /* Whether inserting m keys one by one, O(m log n), is cheaper than
+       relinking the tree, O(n + m). Trees without subtree sizes count
+       their nodes, but only until the answer is clear, which takes no
+       longer than the inserts would.
+     */
+    private boolean insertsAreCheaper(int m){
+        long n = indexOf(null);
+        if (n >= 0){
+            return m * (long) (64 - Long.numberOfLeadingZeros(n)) < n;
+        }
+        long count = 0;
+        for (Node<E> node = subtreeMin(root); node != null; node = successor(node)){
+            count++;
+            if (m * (long) (64 - Long.numberOfLeadingZeros(count)) < count){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Apply a batch of updates in one pass, like insertAllSorted: keys[i]
+       is inserted if insert[i] is set and deleted otherwise. The keys must
+       be in increasing order without duplicates. Existing nodes are reused,
+       deleted ones go to the node pool, and everything is relinked into a
+       balanced tree in O(n + m).
+     */
+    protected void mergeSorted(E[] keys, boolean[] insert, int count){
+        List<Node<E>> merged = new ArrayList<>();
+        // released only at the end, successor() may still walk through them
+        List<Node<E>> deleted = new ArrayList<>();
+        Node<E> existing = subtreeMin(root);
+        for (int i = 0; i < count; i++){
+            int cmpRes = -1;
+            while (existing != null && (cmpRes = compareKeys(existing.key, keys[i])) < 0){
+                merged.add(existing);
+                existing = successor(existing);
+            }
+            boolean present = existing != null && cmpRes == 0;
+            if (insert[i]){
+                if (!present){
+                    merged.add(obtainNode(keys[i]));
+                }
+            }
+            else if (present){
+                deleted.add(existing);
+                existing = successor(existing);
+            }
+        }
+        while (existing != null){
+            merged.add(existing);
+            existing = successor(existing);
+        }
+        changeChild(null, null, linkBalanced(merged, 0, merged.size()));
+        for (Node<E> node : deleted){
+            releaseNode(node);
+        }
+    }
+
+    /* --- parallel bulk operations ---
+       They run in the common ForkJoinPool. The ones that read the tree
+       split it with the spliterator, the ones that build a tree build the
+       left and right subtree of every node as separate tasks, since the
+       two are disjoint. The tree must not be changed while they run.
+     */
+
+    // Below this many keys a subtree is built by a single task
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 13;
+
+    // Runs action on every key, in no particular order and possibly concurrently
+    public void parallelForEach(Consumer<? super E> action){
+        parallelStream().forEach(action);
+    }
+
+    // op has to be associative, and identity an identity for it
+    public E reduce(E identity, BinaryOperator<E> op){
+        return parallelStream().reduce(identity, op);
+    }
+
+    public <R> R reduce(R identity, BiFunction<R, ? super E, R> accumulator, BinaryOperator<R> combiner){
+        return parallelStream().reduce(identity, accumulator, combiner);
+    }
+
+    // A new, perfectly balanced tree of the same kind with the keys that match
+    public BSTree<E> filter(Predicate<? super E> predicate){
+        @SuppressWarnings("unchecked")
+        E[] keys = (E[]) parallelStream().filter(predicate).toArray();
+        BSTree<E> result = createTree();
+        result.linkParallel(keys, keys.length);
+        return result;
+    }
+
+    // An empty tree of the same kind, with the same comparator
+    protected BSTree<E> createTree(){
+        return new BSTree<>(cmp);
+    }
+
+    // null if the keys are compared by their natural order
+    Comparator<E> comparator(){
+        return cmp;
+    }
+
+    /* Replace the contents of the tree with the given keys, in any order;
+       duplicates are dropped. The keys are sorted with Arrays.parallelSort
+       and the perfectly balanced tree is then built in parallel.
+     */
+    public void parallelBuild(E[] keys){
+        E[] sorted = Arrays.copyOf(keys, keys.length);
+        Arrays.parallelSort(sorted, this::compareKeys);
+
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++){
+            if (distinct == 0 || compareKeys(sorted[distinct - 1], sorted[i]) != 0){
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        linkParallel(sorted, distinct);
+    }
+
+    private void linkParallel(E[] sortedKeys, int count){
+        changeChild(null, null, ForkJoinPool.commonPool().invoke(new BuildTask(sortedKeys, 0, count)));
+    }
+
+    // Builds the subtree of keys[from, to) and returns its root
+    @SuppressWarnings("serial") // ForkJoin tasks are never serialized
+    private class BuildTask extends RecursiveTask<Node<E>> {
+        private final E[] keys;
+        private final int from;
+        private final int to;
+
+        BuildTask(E[] keys, int from, int to){
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Node<E> compute(){
+            if (to - from <= PARALLEL_BUILD_THRESHOLD){
+                List<Node<E>> nodes = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++){
+                    nodes.add(createNode(keys[i]));
+                }
+                return linkBalanced(nodes, 0, nodes.size());
+            }
+
+            // same split as linkBalanced, so the shape does not depend on
+            // where the threshold is
+            int mid = (from + to) >>> 1;
+            BuildTask leftTask = new BuildTask(keys, from, mid);
+            leftTask.fork();
+            Node<E> right = new BuildTask(keys, mid + 1, to).compute();
+            Node<E> node = createNode(keys[mid]);
+            return link(node, leftTask.join(), right);
+        }
     }
 
     protected boolean doInsert(Node<E> newNode) {
@@ -257,9 +982,11 @@ public class BSTree<E> {
 
         Node<E> tmp = root;
         Node<E> prev = null;
+        int pathLength = 0;
 
         int cmpRes = 0;
         while(tmp != null){
+            pathLength++;
             cmpRes = compareKeys(tmp.key, key);
             if (cmpRes > 0){
                 prev = tmp;
@@ -270,10 +997,16 @@ public class BSTree<E> {
                 tmp = tmp.getRight();
             }
             else {
+                if (TreeMetrics.ENABLED){
+                    metrics.searchPath(pathLength);
+                }
                 return false; // key already present
             }
 
         }
+        if (TreeMetrics.ENABLED){
+            metrics.searchPath(pathLength);
+        }
 
         if (prev == null){
             root = newNode;
@@ -291,15 +1024,11 @@ public class BSTree<E> {
         return true;
     }
 
+    // Walks parent links instead of recursing, so a degenerate tree
+    // cannot overflow the stack
     public void inorderTraverse(Function<E, Void> f){
-        doInorderTraverse(root, f);
-    }
-
-    private void doInorderTraverse(Node<E> node, Function<E, Void> f) {
-        if (node != null){
-            doInorderTraverse(node.getLeft(), f);
+        for (Node<E> node = subtreeMin(root); node != null; node = successor(node)){
             f.apply(node.key);
-            doInorderTraverse(node.getRight(), f);
         }
     }
 
@@ -327,6 +1056,35 @@ public class BSTree<E> {
         }
     }
 
+    /* An immutable copy of the keys in Eytzinger order for fast lookups;
+       later changes to the tree do not show up in it
+     */
+    public FrozenTree<E> freeze(){
+        List<E> sortedKeys = new ArrayList<>();
+        for (E key : this){
+            sortedKeys.add(key);
+        }
+        return new FrozenTree<>(cmp, sortedKeys.toArray());
+    }
+
+    /* Write the keys to a file that TreeSnapshot.open can map back in
+       without rebuilding the tree. The codec has to order keys the same
+       way as the tree. The file is replaced atomically: if writing fails,
+       an existing snapshot is left as it was.
+     */
+    public void save(Path file, KeyCodec<E> codec) throws IOException {
+        try (TreeSnapshot.Writer<E> writer = new TreeSnapshot.Writer<>(file, codec)){
+            inorderTraverse(key -> {
+                writer.append(key);
+                return null;
+            });
+            writer.commit();
+        }
+        catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
     private Node<E> subtreeMax(Node<E> subtreeRoot){
         if (subtreeRoot == null){
             return null;
@@ -340,7 +1098,20 @@ public class BSTree<E> {
         }
     }
 
-    private Node<E> subtreeMin(Node<E> subtreeRoot){
+    // In-order successor, walking parent links
+    protected Node<E> successor(Node<E> node){
+        if (node.getRight() != null){
+            return subtreeMin(node.getRight());
+        }
+        Node<E> parent = node.getParent();
+        while (parent != null && node.isRightChildOf(parent)){
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    protected Node<E> subtreeMin(Node<E> subtreeRoot){
         if (subtreeRoot == null){
             return null;
         }
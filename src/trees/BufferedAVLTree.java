@@ -0,0 +1,167 @@
+package trees;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/* AVLTree for bursts of writes. insert and delete only append to a log;
+   flush() sorts the log (stable, so the last write of a key wins) and
+   applies it to the tree as one batch:
+
+   - a batch that is big compared to the tree is merged with it in one
+     pass over the nodes and relinked into a balanced tree
+     (BSTree.mergeSorted), so there is no per-key search or rebalancing
+     walk at all
+   - a small batch is applied key by key; it is sorted, so consecutive
+     keys find the same path in cache
+
+   The log flushes itself once it holds as many writes as the tree has
+   keys (but at least minBuffer), so during a long ingest every flush is
+   a merge and the cost per write is the log sort plus O(1).
+
+   Reads flush first, so they always see every write. insert and delete
+   cannot tell whether they changed anything without a lookup, so unlike
+   AVLTree they return nothing.
+ */
+public class BufferedAVLTree<E> implements Iterable<E> {
+    public static final int DEFAULT_MIN_BUFFER = 1 << 12;
+    // A batch of m writes is merged into a tree of n keys if m * REBUILD_RATIO >= n,
+    // i.e. when relinking every node costs less than m searches and walks
+    private static final int REBUILD_RATIO = 16;
+
+    private final AVLTree<E> tree;
+    private final int minBuffer;
+    // Keys to insert, and Deletions; in the order of the writes
+    private Object[] log;
+    private int pending;
+
+    private static final class Deletion {
+        final Object key;
+
+        Deletion(Object key){
+            this.key = key;
+        }
+    }
+
+    public BufferedAVLTree(int minBuffer, Comparator<E> cmp){
+        if (minBuffer < 1){
+            throw new IllegalArgumentException("Buffer needs room for at least one write, got " + minBuffer);
+        }
+        this.tree = new AVLTree<>(cmp);
+        this.minBuffer = minBuffer;
+        this.log = new Object[minBuffer];
+    }
+
+    public BufferedAVLTree(Comparator<E> cmp){
+        this(DEFAULT_MIN_BUFFER, cmp);
+    }
+
+    public BufferedAVLTree(){
+        this(DEFAULT_MIN_BUFFER, null);
+    }
+
+    public void insert(E key){
+        append(key);
+    }
+
+    public void delete(E key){
+        append(new Deletion(key));
+    }
+
+    private void append(Object write){
+        if (pending == log.length){
+            if (pending >= Math.max(minBuffer, tree.size())){
+                flush();
+            }
+            else {
+                log = Arrays.copyOf(log, 2 * log.length);
+            }
+        }
+        log[pending++] = write;
+    }
+
+    // Number of writes not applied to the tree yet
+    public int pending(){
+        return pending;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E keyOf(Object write){
+        return write instanceof Deletion ? (E) ((Deletion) write).key : (E) write;
+    }
+
+    // Apply all buffered writes to the tree
+    @SuppressWarnings("unchecked")
+    public void flush(){
+        if (pending == 0){
+            return;
+        }
+        Arrays.sort(log, 0, pending, (a, b) -> tree.compareKeys(keyOf(a), keyOf(b)));
+
+        // only the last write of every key counts
+        E[] keys = (E[]) new Object[pending];
+        boolean[] insert = new boolean[pending];
+        int count = 0;
+        for (int i = 0; i < pending; i++){
+            if (i + 1 < pending && tree.compareKeys(keyOf(log[i]), keyOf(log[i + 1])) == 0){
+                continue;
+            }
+            keys[count] = keyOf(log[i]);
+            insert[count] = !(log[i] instanceof Deletion);
+            count++;
+        }
+        Arrays.fill(log, 0, pending, null);
+        pending = 0;
+
+        if ((long) count * REBUILD_RATIO >= tree.size()){
+            tree.mergeSorted(keys, insert, count);
+        }
+        else {
+            for (int i = 0; i < count; i++){
+                if (insert[i]){
+                    tree.insert(keys[i]);
+                }
+                else {
+                    tree.delete(keys[i]);
+                }
+            }
+        }
+    }
+
+    public boolean contains(E key){
+        flush();
+        return tree.find(key) != null;
+    }
+
+    public int size(){
+        flush();
+        return tree.size();
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    /* The tree with all writes applied, for the rest of the AVLTree API
+       (navigation, rank, ranges, ...). Writes made through this object
+       afterwards are buffered again until the next read or flush.
+     */
+    public AVLTree<E> tree(){
+        flush();
+        return tree;
+    }
+
+    // Iterates over the keys as of now. Later writes are buffered, so they
+    // do not disturb the iteration unless the log fills up and flushes
+    @Override
+    public Iterator<E> iterator(){
+        flush();
+        return tree.iterator();
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        flush();
+        tree.inorderTraverse(f);
+    }
+}
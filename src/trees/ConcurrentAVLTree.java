@@ -0,0 +1,953 @@
+package trees;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Concurrent AVL tree set, after Bronson, Casper, Chafi and Olukotun,
+   "A Practical Concurrent Binary Search Tree" (PPoPP 2010).
+
+   - contains never locks. Every node carries a version number (the OVL)
+     that changes whenever a rotation moves the node down, i.e. whenever
+     the range of keys below it shrinks. A search checks the version of a
+     node after reading its child; if it changed, the search backs up one
+     level and tries again.
+   - insert and delete lock only the node they change and its parent;
+     rotations lock the parent, the node and the child(ren) that move.
+   - Deleting a key with two children just marks its node as a routing
+     node (no key present) instead of moving the successor up, which would
+     need many locks. Routing nodes are unlinked once they have at most
+     one child.
+   - Heights are fixed up lazily by the thread that damaged them, so the
+     tree is only approximately balanced while updates are in flight
+     ("relaxed balance").
+
+   Navigation (first, last, floor, ceiling, lower, higher) descends the
+   same way as contains, validating every step by the versions, and never
+   locks either. Iterators are weakly consistent, as in
+   java.util.concurrent: they find each next key with higher, so they
+   return keys in increasing order, every key at most once, every key
+   that is present during the whole iteration and no key that is absent
+   during all of it. That costs O(log n) per key; there is no rank,
+   select, split or bulk operation.
+
+   It is a set only. The nodes have a value field, but it just marks a
+   key as present (PRESENT) or not (null, a routing node); a map would
+   need put to replace values, and updates only switch between the two.
+
+   ConcurrentAVLTreeStress (library/src/test/java, run by mvn test)
+   hammers it from several threads and checks the counts, the contents,
+   the iterators and the AVL shape once it is quiescent.
+
+   The names follow AVLTree where there is an equivalent.
+ */
+public class ConcurrentAVLTree<E> implements Iterable<E> {
+    // OVL (optimistic version lock) encoding
+    private static final long UNLINKED = 0x1L;
+    private static final long SHRINKING = 0x2L;
+    private static final long SHRINK_COUNT_INCR = 0x4L;
+
+    // Results of nodeCondition, positive values are a height to set
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    private static final int SPIN_COUNT = 100;
+
+    // Returned by the recursive search when it has to back up
+    private static final Object RETRY = new Object();
+    private static final Object PRESENT = Boolean.TRUE;
+
+    private final Comparator<? super E> cmp;
+    // Sentinel without key whose right child is the root
+    private final Node<E> rootHolder = new Node<>(null, 1, null, null);
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentAVLTree(Comparator<? super E> cmp){
+        this.cmp = cmp;
+    }
+
+    public ConcurrentAVLTree(){
+        this(null);
+    }
+
+    static final class Node<E> {
+        final E key;
+        volatile int height;
+        // PRESENT, or null for a routing node
+        volatile Object value;
+        volatile long version;
+        volatile Node<E> parent;
+        volatile Node<E> left;
+        volatile Node<E> right;
+
+        Node(E key, int height, Object value, Node<E> parent){
+            this.key = key;
+            this.height = height;
+            this.value = value;
+            this.parent = parent;
+        }
+
+        Node<E> child(int dir){
+            return dir < 0 ? left : right;
+        }
+
+        void setChild(int dir, Node<E> node){
+            if (dir < 0){
+                left = node;
+            }
+            else {
+                right = node;
+            }
+        }
+
+        // Wait for a rotation that moves this node down to finish.
+        // Rotations hold the lock of the node, so if spinning does not
+        // help, taking the lock does.
+        void waitUntilShrinkCompleted(long ovl){
+            if (!isShrinking(ovl)){
+                return;
+            }
+            for (int tries = 0; tries < SPIN_COUNT; tries++){
+                if (version != ovl){
+                    return;
+                }
+                SpinWait.onSpinWait();
+            }
+            synchronized (this){
+            }
+        }
+    }
+
+    private static boolean isShrinking(long ovl){
+        return (ovl & SHRINKING) != 0;
+    }
+
+    private static boolean isUnlinked(long ovl){
+        return (ovl & UNLINKED) != 0;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long ovl){
+        return (ovl & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static long beginShrink(long ovl){
+        return ovl | SHRINKING;
+    }
+
+    private static long endShrink(long ovl){
+        return ovl + SHRINK_COUNT_INCR;
+    }
+
+    private static int height(Node<?> node){
+        return node == null ? 0 : node.height;
+    }
+
+    private int compareKeys(E key1, E key2){
+        return Keys.compare(cmp, key1, key2);
+    }
+
+    // The root node, for checking the shape of a quiescent tree
+    Node<E> root(){
+        return rootHolder.right;
+    }
+
+    public long size(){
+        return size.sum();
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    // --- search ---
+
+    public boolean contains(E key){
+        while (true){
+            Node<E> right = rootHolder.right;
+            if (right == null){
+                return false;
+            }
+            int cmpRes = compareKeys(key, right.key);
+            if (cmpRes == 0){
+                return right.value != null;
+            }
+            long ovl = right.version;
+            if (isShrinkingOrUnlinked(ovl)){
+                right.waitUntilShrinkCompleted(ovl);
+            }
+            else if (right == rootHolder.right){
+                Object result = attemptGet(key, right, cmpRes, ovl);
+                if (result != RETRY){
+                    return result != null;
+                }
+            }
+        }
+    }
+
+    // Search below node, which was reached while it had version nodeOVL
+    private Object attemptGet(E key, Node<E> node, int dirToChild, long nodeOVL){
+        while (true){
+            Node<E> child = node.child(dirToChild);
+            if (child == null){
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                return null;
+            }
+
+            int cmpRes = compareKeys(key, child.key);
+            if (cmpRes == 0){
+                return child.value;
+            }
+
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)){
+                child.waitUntilShrinkCompleted(childOVL);
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                // else retry from node
+            }
+            else if (child != node.child(dirToChild)){
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                // else retry from node
+            }
+            else {
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                // node was valid when we read child, and child is validated
+                // from here on, so node's version no longer matters
+                Object result = attemptGet(key, child, cmpRes, childOVL);
+                if (result != RETRY){
+                    return result;
+                }
+            }
+        }
+    }
+
+    // --- navigation ---
+
+    // Smallest key in the tree, null if it is empty
+    public E first(){
+        return navigate(null, true, 1);
+    }
+
+    // Largest key in the tree, null if it is empty
+    public E last(){
+        return navigate(null, true, -1);
+    }
+
+    // Largest key <= key, null if there is none
+    public E floor(E key){
+        return navigate(key, true, -1);
+    }
+
+    // Smallest key >= key, null if there is none
+    public E ceiling(E key){
+        return navigate(key, true, 1);
+    }
+
+    // Largest key < key, null if there is none
+    public E lower(E key){
+        return navigate(key, false, -1);
+    }
+
+    // Smallest key > key, null if there is none
+    public E higher(E key){
+        return navigate(key, false, 1);
+    }
+
+    /* The closest present key to key in direction dir (1 for larger, -1
+       for smaller), key itself if inclusive; with a null key the smallest
+       (dir 1) or largest (dir -1) present key.
+     */
+    @SuppressWarnings("unchecked")
+    private E navigate(E key, boolean inclusive, int dir){
+        while (true){
+            Node<E> right = rootHolder.right;
+            if (right == null){
+                return null;
+            }
+            long ovl = right.version;
+            if (isShrinkingOrUnlinked(ovl)){
+                right.waitUntilShrinkCompleted(ovl);
+            }
+            else if (right == rootHolder.right){
+                Object result = attemptNavigate(key, inclusive, dir, right, ovl);
+                if (result != RETRY){
+                    return (E) result;
+                }
+            }
+        }
+    }
+
+    // Search the subtree of node, which was reached while it had version
+    // nodeOVL; returns the key, null if there is none in the subtree, or RETRY
+    private Object attemptNavigate(E key, boolean inclusive, int dir, Node<E> node, long nodeOVL){
+        // > 0 if node is not in the direction of key
+        int cmpRes = key == null ? -1 : dir * compareKeys(key, node.key);
+        if (cmpRes > 0 || (cmpRes == 0 && !inclusive)){
+            return attemptNavigateBelow(key, inclusive, dir, node, nodeOVL, dir);
+        }
+        if (cmpRes < 0){
+            // closer keys may be on the side of key
+            Object result = attemptNavigateBelow(key, inclusive, dir, node, nodeOVL, -dir);
+            if (result != null){
+                return result;
+            }
+        }
+        if (node.value != null){
+            return node.key;
+        }
+        // a routing node, the answer is past it
+        return attemptNavigateBelow(key, inclusive, dir, node, nodeOVL, dir);
+    }
+
+    // attemptNavigate in the child of node on side dirToChild, validated
+    // like attemptGet
+    private Object attemptNavigateBelow(E key, boolean inclusive, int dir, Node<E> node, long nodeOVL,
+                                        int dirToChild){
+        while (true){
+            Node<E> child = node.child(dirToChild);
+            if (child == null){
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                return null;
+            }
+
+            long childOVL = child.version;
+            if (isShrinkingOrUnlinked(childOVL)){
+                child.waitUntilShrinkCompleted(childOVL);
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                // else retry from node
+            }
+            else if (child != node.child(dirToChild)){
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                // else retry from node
+            }
+            else {
+                if (node.version != nodeOVL){
+                    return RETRY;
+                }
+                Object result = attemptNavigate(key, inclusive, dir, child, childOVL);
+                if (result != RETRY){
+                    return result;
+                }
+            }
+        }
+    }
+
+    // --- iteration ---
+
+    // All keys in increasing order, weakly consistent
+    @Override
+    public Iterator<E> iterator(){
+        return new KeyIterator(null, null);
+    }
+
+    // The keys in [from, to) in increasing order, weakly consistent; null
+    // bounds are open
+    public Iterator<E> iterator(E from, E to){
+        return new KeyIterator(from, to);
+    }
+
+    private class KeyIterator implements Iterator<E> {
+        private final E to;
+        private E next;
+
+        KeyIterator(E from, E to){
+            this.to = to;
+            advance(from == null ? first() : ceiling(from));
+        }
+
+        private void advance(E key){
+            next = key != null && (to == null || compareKeys(key, to) < 0) ? key : null;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next != null;
+        }
+
+        @Override
+        public E next(){
+            if (next == null){
+                throw new NoSuchElementException();
+            }
+            E key = next;
+            advance(higher(key));
+            return key;
+        }
+    }
+
+    // --- updates ---
+
+    public boolean insert(E key){
+        if (update(key, PRESENT) == null){
+            size.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean delete(E key){
+        if (update(key, null) != null){
+            size.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    // An insert (newValue == PRESENT) only changes a node without a key,
+    // a delete (newValue == null) only one with a key
+    private static boolean shouldUpdate(Object previous, Object newValue){
+        return (previous == null) == (newValue != null);
+    }
+
+    // Returns the previous value of the key (null if it was absent)
+    private Object update(E key, Object newValue){
+        while (true){
+            Node<E> right = rootHolder.right;
+            if (right == null){
+                if (newValue == null || attemptInsertIntoEmpty(key, newValue)){
+                    return null;
+                }
+                // else retry
+            }
+            else {
+                long ovl = right.version;
+                if (isShrinkingOrUnlinked(ovl)){
+                    right.waitUntilShrinkCompleted(ovl);
+                }
+                else if (right == rootHolder.right){
+                    Object result = attemptUpdate(key, newValue, rootHolder, right, ovl);
+                    if (result != RETRY){
+                        return result;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean attemptInsertIntoEmpty(E key, Object value){
+        synchronized (rootHolder){
+            if (rootHolder.right == null){
+                rootHolder.right = new Node<>(key, 1, value, rootHolder);
+                rootHolder.height = 2;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private Object attemptUpdate(E key, Object newValue, Node<E> parent, Node<E> node, long nodeOVL){
+        int cmpRes = compareKeys(key, node.key);
+        if (cmpRes == 0){
+            return attemptNodeUpdate(newValue, parent, node);
+        }
+
+        while (true){
+            Node<E> child = node.child(cmpRes);
+            if (node.version != nodeOVL){
+                return RETRY;
+            }
+
+            if (child == null){
+                if (newValue == null){
+                    return null; // nothing to delete
+                }
+
+                Node<E> damaged;
+                synchronized (node){
+                    // with the lock held no rotation can move node any more
+                    if (node.version != nodeOVL){
+                        return RETRY;
+                    }
+                    if (node.child(cmpRes) != null){
+                        // lost a race with another insert, retry from node
+                        continue;
+                    }
+                    node.setChild(cmpRes, new Node<>(key, 1, newValue, node));
+                    damaged = fixHeight_nl(node);
+                }
+                fixHeightAndRebalance(damaged);
+                return null;
+            }
+            else {
+                long childOVL = child.version;
+                if (isShrinkingOrUnlinked(childOVL)){
+                    child.waitUntilShrinkCompleted(childOVL);
+                    // retry from node
+                }
+                else if (child != node.child(cmpRes)){
+                    // retry from node
+                }
+                else {
+                    if (node.version != nodeOVL){
+                        return RETRY;
+                    }
+                    Object result = attemptUpdate(key, newValue, node, child, childOVL);
+                    if (result != RETRY){
+                        return result;
+                    }
+                }
+            }
+        }
+    }
+
+    // node holds the key; parent is only needed to unlink node
+    private Object attemptNodeUpdate(Object newValue, Node<E> parent, Node<E> node){
+        if (newValue == null && node.value == null){
+            return null; // already deleted
+        }
+
+        if (newValue == null && (node.left == null || node.right == null)){
+            // deleting will unlink node, which needs the parent locked too
+            Object previous;
+            Node<E> damaged;
+            synchronized (parent){
+                if (isUnlinked(parent.version) || node.parent != parent){
+                    return RETRY;
+                }
+                synchronized (node){
+                    previous = node.value;
+                    if (!shouldUpdate(previous, newValue)){
+                        return previous;
+                    }
+                    if (!attemptUnlink_nl(parent, node)){
+                        return RETRY;
+                    }
+                }
+                damaged = fixHeight_nl(parent);
+            }
+            fixHeightAndRebalance(damaged);
+            return previous;
+        }
+        else {
+            synchronized (node){
+                if (isUnlinked(node.version)){
+                    return RETRY;
+                }
+                Object previous = node.value;
+                if (!shouldUpdate(previous, newValue)){
+                    return previous;
+                }
+                if (newValue == null && (node.left == null || node.right == null)){
+                    // a child went away in the meantime, node can be unlinked now
+                    return RETRY;
+                }
+                node.value = newValue;
+                return previous;
+            }
+        }
+    }
+
+    // Splice out node, which has at most one child. Parent and node are locked.
+    private boolean attemptUnlink_nl(Node<E> parent, Node<E> node){
+        Node<E> parentLeft = parent.left;
+        Node<E> parentRight = parent.right;
+        if (parentLeft != node && parentRight != node){
+            return false; // node is no longer a child of parent
+        }
+
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+        if (left != null && right != null){
+            return false; // got a second child in the meantime
+        }
+
+        Node<E> splice = left != null ? left : right;
+        if (parentLeft == node){
+            parent.left = splice;
+        }
+        else {
+            parent.right = splice;
+        }
+        if (splice != null){
+            splice.parent = parent;
+        }
+
+        node.version = UNLINKED;
+        node.value = null;
+        return true;
+    }
+
+    // --- rebalancing ---
+
+    private int nodeCondition(Node<E> node){
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+
+        if ((left == null || right == null) && node.value == null){
+            return UNLINK_REQUIRED;
+        }
+
+        int hN = node.height;
+        int hL = height(left);
+        int hR = height(right);
+        int newHeight = 1 + Math.max(hL, hR);
+        int balance = hL - hR;
+
+        if (balance < -1 || balance > 1){
+            return REBALANCE_REQUIRED;
+        }
+        // Whoever changes a node afterwards promises to fix it, so if this
+        // read was inconsistent someone else takes over
+        return hN != newHeight ? newHeight : NOTHING_REQUIRED;
+    }
+
+    // Walk up from a damaged node, fixing heights, unlinking routing nodes
+    // and rotating until nothing is left to do
+    private void fixHeightAndRebalance(Node<E> node){
+        // A rotation that leaves damage below it returns the deepest damaged
+        // node without fixing the height above the rotation; those parents
+        // are looked at again once the damage below them is repaired
+        ArrayDeque<Node<E>> pending = null;
+        while (true){
+            if (node == null || node.parent == null || isUnlinked(node.version)
+                    || nodeCondition(node) == NOTHING_REQUIRED){
+                if (pending == null || pending.isEmpty()){
+                    return;
+                }
+                node = pending.pop();
+                continue;
+            }
+
+            int condition = nodeCondition(node);
+            if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED){
+                synchronized (node){
+                    node = fixHeight_nl(node);
+                }
+            }
+            else {
+                Node<E> parent = node.parent;
+                synchronized (parent){
+                    if (!isUnlinked(parent.version) && node.parent == parent){
+                        synchronized (node){
+                            node = rebalance_nl(parent, node);
+                        }
+                        if (node != null && node != parent && node != parent.parent){
+                            if (pending == null){
+                                pending = new ArrayDeque<>();
+                            }
+                            pending.push(parent);
+                        }
+                    }
+                    // else retry with the new parent
+                }
+            }
+        }
+    }
+
+    // Fix the height of a locked node; returns the next node that needs
+    // attention, or null
+    private Node<E> fixHeight_nl(Node<E> node){
+        int condition = nodeCondition(node);
+        switch (condition){
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    // parent and node are locked
+    private Node<E> rebalance_nl(Node<E> parent, Node<E> node){
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+
+        if ((left == null || right == null) && node.value == null){
+            if (attemptUnlink_nl(parent, node)){
+                return fixHeight_nl(parent);
+            }
+            return node;
+        }
+
+        int hN = node.height;
+        int hL = height(left);
+        int hR = height(right);
+        int newHeight = 1 + Math.max(hL, hR);
+        int balance = hL - hR;
+
+        if (balance > 1){
+            return rebalanceToRight_nl(parent, node, left, hR);
+        }
+        else if (balance < -1){
+            return rebalanceToLeft_nl(parent, node, right, hL);
+        }
+        else if (newHeight != hN){
+            node.height = newHeight;
+            return fixHeight_nl(parent);
+        }
+        return null;
+    }
+
+    // The left subtree of node is too high: LL or LR case
+    private Node<E> rebalanceToRight_nl(Node<E> parent, Node<E> node, Node<E> left, int hR){
+        synchronized (left){
+            int hL = left.height;
+            if (hL - hR <= 1){
+                return node; // changed in the meantime, look again
+            }
+
+            Node<E> leftRight = left.right;
+            int hLL = height(left.left);
+            int hLR = height(leftRight);
+            if (hLL >= hLR){
+                return RightRotate_nl(parent, node, left, hR, hLL, leftRight, hLR);
+            }
+
+            synchronized (leftRight){
+                hLR = leftRight.height;
+                if (hLL >= hLR){
+                    return RightRotate_nl(parent, node, left, hR, hLL, leftRight, hLR);
+                }
+
+                int hLRL = height(leftRight.left);
+                int balance = hLL - hLRL;
+                if (balance >= -1 && balance <= 1 && !((hLL == 0 || hLRL == 0) && left.value == null)){
+                    return LeftRightRotate_nl(parent, node, left, hR, hLL, leftRight, hLRL);
+                }
+
+                // A double rotation would leave left damaged next to a damaged
+                // node, so only do its first half; node is looked at again
+                // once left is repaired
+                return LeftRotate_nl(node, left, hLL, leftRight, leftRight.left,
+                                     hLRL, height(leftRight.right));
+            }
+        }
+    }
+
+    // The right subtree of node is too high: RR or RL case
+    private Node<E> rebalanceToLeft_nl(Node<E> parent, Node<E> node, Node<E> right, int hL){
+        synchronized (right){
+            int hR = right.height;
+            if (hL - hR >= -1){
+                return node; // changed in the meantime, look again
+            }
+
+            Node<E> rightLeft = right.left;
+            int hRL = height(rightLeft);
+            int hRR = height(right.right);
+            if (hRR >= hRL){
+                return LeftRotate_nl(parent, node, hL, right, rightLeft, hRL, hRR);
+            }
+
+            synchronized (rightLeft){
+                hRL = rightLeft.height;
+                if (hRR >= hRL){
+                    return LeftRotate_nl(parent, node, hL, right, rightLeft, hRL, hRR);
+                }
+
+                int hRLR = height(rightLeft.right);
+                int balance = hRR - hRLR;
+                if (balance >= -1 && balance <= 1 && !((hRR == 0 || hRLR == 0) && right.value == null)){
+                    return RightLeftRotate_nl(parent, node, hL, right, rightLeft, hRR, hRLR);
+                }
+
+                return RightRotate_nl(node, right, rightLeft, hRR, height(rightLeft.left),
+                                      rightLeft.right, hRLR);
+            }
+        }
+    }
+
+    private void replaceChild_nl(Node<E> parent, Node<E> oldChild, Node<E> newChild){
+        if (parent.left == oldChild){
+            parent.left = newChild;
+        }
+        else {
+            parent.right = newChild;
+        }
+        newChild.parent = parent;
+    }
+
+    // The links are changed in an order that keeps concurrent searches
+    // correct for every node except "node", which is marked as shrinking
+    private Node<E> RightRotate_nl(Node<E> parent, Node<E> node, Node<E> left,
+                                   int hR, int hLL, Node<E> leftRight, int hLR){
+        long nodeOVL = node.version;
+        node.version = beginShrink(nodeOVL);
+
+        node.left = leftRight;
+        if (leftRight != null){
+            leftRight.parent = node;
+        }
+        left.right = node;
+        node.parent = left;
+        replaceChild_nl(parent, node, left);
+
+        int hNode = 1 + Math.max(hLR, hR);
+        node.height = hNode;
+        left.height = 1 + Math.max(hLL, hNode);
+
+        node.version = endShrink(nodeOVL);
+
+        // Report the deepest node that is still damaged
+        int balanceNode = hLR - hR;
+        if (balanceNode < -1 || balanceNode > 1){
+            return node;
+        }
+        if ((leftRight == null || hR == 0) && node.value == null){
+            return node;
+        }
+        int balanceLeft = hLL - hNode;
+        if (balanceLeft < -1 || balanceLeft > 1){
+            return left;
+        }
+        if (hLL == 0 && left.value == null){
+            return left;
+        }
+        return fixHeight_nl(parent);
+    }
+
+    private Node<E> LeftRotate_nl(Node<E> parent, Node<E> node, int hL,
+                                  Node<E> right, Node<E> rightLeft, int hRL, int hRR){
+        long nodeOVL = node.version;
+        node.version = beginShrink(nodeOVL);
+
+        node.right = rightLeft;
+        if (rightLeft != null){
+            rightLeft.parent = node;
+        }
+        right.left = node;
+        node.parent = right;
+        replaceChild_nl(parent, node, right);
+
+        int hNode = 1 + Math.max(hL, hRL);
+        node.height = hNode;
+        right.height = 1 + Math.max(hNode, hRR);
+
+        node.version = endShrink(nodeOVL);
+
+        int balanceNode = hRL - hL;
+        if (balanceNode < -1 || balanceNode > 1){
+            return node;
+        }
+        if ((rightLeft == null || hL == 0) && node.value == null){
+            return node;
+        }
+        int balanceRight = hRR - hNode;
+        if (balanceRight < -1 || balanceRight > 1){
+            return right;
+        }
+        if (hRR == 0 && right.value == null){
+            return right;
+        }
+        return fixHeight_nl(parent);
+    }
+
+    // LR case in one step: leftRight becomes the root of the subtree
+    private Node<E> LeftRightRotate_nl(Node<E> parent, Node<E> node, Node<E> left,
+                                       int hR, int hLL, Node<E> leftRight, int hLRL){
+        long nodeOVL = node.version;
+        long leftOVL = left.version;
+
+        Node<E> leftRightLeft = leftRight.left;
+        Node<E> leftRightRight = leftRight.right;
+        int hLRR = height(leftRightRight);
+
+        node.version = beginShrink(nodeOVL);
+        left.version = beginShrink(leftOVL);
+
+        node.left = leftRightRight;
+        if (leftRightRight != null){
+            leftRightRight.parent = node;
+        }
+        left.right = leftRightLeft;
+        if (leftRightLeft != null){
+            leftRightLeft.parent = left;
+        }
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        replaceChild_nl(parent, node, leftRight);
+
+        int hNode = 1 + Math.max(hLRR, hR);
+        node.height = hNode;
+        int hLeft = 1 + Math.max(hLL, hLRL);
+        left.height = hLeft;
+        leftRight.height = 1 + Math.max(hLeft, hNode);
+
+        node.version = endShrink(nodeOVL);
+        left.version = endShrink(leftOVL);
+
+        int balanceNode = hLRR - hR;
+        if (balanceNode < -1 || balanceNode > 1){
+            return node;
+        }
+        if ((leftRightRight == null || hR == 0) && node.value == null){
+            return node;
+        }
+        int balanceLeftRight = hLeft - hNode;
+        if (balanceLeftRight < -1 || balanceLeftRight > 1){
+            return leftRight;
+        }
+        return fixHeight_nl(parent);
+    }
+
+    // RL case in one step: rightLeft becomes the root of the subtree
+    private Node<E> RightLeftRotate_nl(Node<E> parent, Node<E> node, int hL,
+                                       Node<E> right, Node<E> rightLeft, int hRR, int hRLR){
+        long nodeOVL = node.version;
+        long rightOVL = right.version;
+
+        Node<E> rightLeftLeft = rightLeft.left;
+        Node<E> rightLeftRight = rightLeft.right;
+        int hRLL = height(rightLeftLeft);
+
+        node.version = beginShrink(nodeOVL);
+        right.version = beginShrink(rightOVL);
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null){
+            rightLeftLeft.parent = node;
+        }
+        right.left = rightLeftRight;
+        if (rightLeftRight != null){
+            rightLeftRight.parent = right;
+        }
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        replaceChild_nl(parent, node, rightLeft);
+
+        int hNode = 1 + Math.max(hL, hRLL);
+        node.height = hNode;
+        int hRight = 1 + Math.max(hRLR, hRR);
+        right.height = hRight;
+        rightLeft.height = 1 + Math.max(hNode, hRight);
+
+        node.version = endShrink(nodeOVL);
+        right.version = endShrink(rightOVL);
+
+        int balanceNode = hRLL - hL;
+        if (balanceNode < -1 || balanceNode > 1){
+            return node;
+        }
+        if ((rightLeftLeft == null || hL == 0) && node.value == null){
+            return node;
+        }
+        int balanceRightLeft = hRight - hNode;
+        if (balanceRightLeft < -1 || balanceRightLeft > 1){
+            return rightLeft;
+        }
+        return fixHeight_nl(parent);
+    }
+}
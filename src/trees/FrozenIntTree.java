@@ -0,0 +1,62 @@
+package trees;
+
+import java.util.function.IntConsumer;
+
+/* FrozenTree for int keys, built by IntAVLTree.freeze(). The keys are
+   plain ints in Eytzinger order, so the 16 possible nodes four levels
+   below keys[k] are the 64 bytes of keys[16k .. 16k + 15]. The JVM does
+   not align array elements to cache lines (there is a header in front
+   of them), so that is one or two lines, where a tree of nodes would
+   touch four.
+ */
+public final class FrozenIntTree {
+    // keys[0] is unused
+    private final int[] keys;
+    private final int size;
+
+    FrozenIntTree(int[] sortedKeys){
+        size = sortedKeys.length;
+        keys = new int[size + 1];
+        int i = 0;
+        for (int k = FrozenTree.inorderFirst(size); k != 0; k = FrozenTree.inorderNext(k, size)){
+            keys[k] = sortedKeys[i++];
+        }
+    }
+
+    // Index of the smallest key >= key, 0 if there is none. The comparison
+    // only feeds arithmetic, which the JIT compiles without a branch
+    private int lowerBoundIndex(int key){
+        int[] keys = this.keys;
+        long k = 1; // see FrozenTree, 2k may not fit in an int
+        while (k <= size){
+            k = 2 * k + (keys[(int) k] < key ? 1 : 0);
+        }
+        return (int) (k >> (Long.numberOfTrailingZeros(~k) + 1));
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public boolean contains(int key){
+        int k = lowerBoundIndex(key);
+        return k != 0 && keys[k] == key;
+    }
+
+    // Smallest key >= key, or notFound if all keys are smaller
+    public int lowerBound(int key, int notFound){
+        int k = lowerBoundIndex(key);
+        return k != 0 ? keys[k] : notFound;
+    }
+
+    // Visits the keys in increasing order
+    public void inorderTraverse(IntConsumer f){
+        for (int k = FrozenTree.inorderFirst(size); k != 0; k = FrozenTree.inorderNext(k, size)){
+            f.accept(keys[k]);
+        }
+    }
+}
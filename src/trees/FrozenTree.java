@@ -0,0 +1,137 @@
+package trees;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/* Immutable copy of a tree's keys in Eytzinger (breadth-first) order:
+   keys[1] is the root and the children of keys[k] are keys[2k] and
+   keys[2k + 1], so there are no pointers at all. The top levels of every
+   search are the same few array slots, which stay in cache, and the
+   slots a search can reach in the next levels are next to each other.
+
+   A search always goes down to the bottom level, moving right when
+   keys[k] < key, and recovers the answer afterwards from the bits of k,
+   so the loop has no data-dependent branch. Built by BSTree.freeze();
+   see FrozenIntTree for int keys.
+ */
+public final class FrozenTree<E> implements Iterable<E> {
+    private final Comparator<E> cmp;
+    // keys[0] is unused
+    private final Object[] keys;
+    private final int size;
+
+    FrozenTree(Comparator<E> cmp, Object[] sortedKeys){
+        this.cmp = cmp;
+        this.size = sortedKeys.length;
+        this.keys = new Object[size + 1];
+        int i = 0;
+        for (int k = inorderFirst(size); k != 0; k = inorderNext(k, size)){
+            keys[k] = sortedKeys[i++];
+        }
+    }
+
+    /* Index arithmetic on the tree: the children 2k and 2k + 1 of a key
+       near the end of a big array are past Integer.MAX_VALUE, so the
+       tests compare k with n / 2 instead, and the search runs in longs.
+     */
+
+    // Index of the smallest key of an Eytzinger array of n keys, 0 if n == 0
+    static int inorderFirst(int n){
+        if (n == 0){
+            return 0;
+        }
+        int k = 1;
+        while (k <= n / 2){ // 2k <= n
+            k = 2 * k;
+        }
+        return k;
+    }
+
+    // Index of the next bigger key after keys[k], 0 after the biggest one
+    static int inorderNext(int k, int n){
+        if (k <= (n - 1) / 2){ // 2k + 1 <= n
+            // leftmost node of the right subtree
+            k = 2 * k + 1;
+            while (k <= n / 2){
+                k = 2 * k;
+            }
+            return k;
+        }
+        // up while coming from a right child, then up once more
+        return k >> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    private int compareKeys(E key1, E key2){
+        return Keys.compare(cmp, key1, key2);
+    }
+
+    // Index of the smallest key >= key, 0 if there is none
+    @SuppressWarnings("unchecked")
+    private int lowerBoundIndex(E key){
+        long k = 1;
+        while (k <= size){
+            k = 2 * k + (compareKeys((E) keys[(int) k], key) < 0 ? 1 : 0);
+        }
+        // k went right at the trailing ones, the answer is where it last went left
+        return (int) (k >> (Long.numberOfTrailingZeros(~k) + 1));
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    // Smallest key >= key, or null
+    @SuppressWarnings("unchecked")
+    public E lowerBound(E key){
+        return (E) keys[lowerBoundIndex(key)];
+    }
+
+    // The key equal to key, or null
+    @SuppressWarnings("unchecked")
+    public E find(E key){
+        int k = lowerBoundIndex(key);
+        if (k != 0 && compareKeys((E) keys[k], key) == 0){
+            return (E) keys[k];
+        }
+        return null;
+    }
+
+    public boolean contains(E key){
+        return find(key) != null;
+    }
+
+    @Override
+    public Iterator<E> iterator(){
+        return new Iterator<E>() {
+            private int k = inorderFirst(size);
+
+            @Override
+            public boolean hasNext(){
+                return k != 0;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next(){
+                if (k == 0){
+                    throw new NoSuchElementException();
+                }
+                E key = (E) keys[k];
+                k = inorderNext(k, size);
+                return key;
+            }
+        };
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (E key : this){
+            f.apply(key);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package trees;
+
+/* AVL balancing on nodes that are not objects.
+   A node is an int handle into some storage (parallel arrays, a native
+   buffer, ...), and the subclass decides how the key, the links and the
+   height of a handle are stored. The rotation and rebalancing logic is
+   the same as in AVLTree, just written against handles.
+ */
+public abstract class HandleAVLTree {
+    // The "null" handle
+    public static final int NIL = -1;
+
+    protected int root = NIL;
+    protected int size;
+
+    // --- storage, provided by the subclass ---
+    abstract int getLeft(int node);
+    abstract void setLeft(int node, int left);
+    abstract int getRight(int node);
+    abstract void setRight(int node, int right);
+    abstract int getParent(int node);
+    abstract void setParent(int node, int parent);
+    abstract int getHeight(int node);
+    abstract void setHeight(int node, int height);
+
+    // A node whose links are all NIL and whose height is 1
+    abstract int allocateNode();
+    abstract void freeNode(int node);
+    // Overwrite the key of "to" with the key of "from"
+    abstract void copyKey(int from, int to);
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return root == NIL;
+    }
+
+    final int height(int node){
+        return node == NIL ? 0 : getHeight(node);
+    }
+
+    final int getBalance(int node){
+        return height(getLeft(node)) - height(getRight(node));
+    }
+
+    static boolean balanceOK(int balance){
+        return balance >= -1 && balance <= 1;
+    }
+
+    final void resetHeight(int node){
+        setHeight(node, Math.max(height(getLeft(node)), height(getRight(node))) + 1);
+    }
+
+    // Replace the oldChild of the parent with newChild, parent == NIL means
+    // oldChild is the root
+    final void changeChild(int parent, int oldChild, int newChild){
+        if (parent == NIL){
+            root = newChild;
+        }
+        else if (getLeft(parent) == oldChild){
+            setLeft(parent, newChild);
+        }
+        else {
+            setRight(parent, newChild);
+        }
+
+        if (newChild != NIL){
+            setParent(newChild, parent);
+        }
+    }
+
+    final void LeftRotate(int start){
+        int rightNode = getRight(start);
+        int originalParent = getParent(start);
+        int middle = getLeft(rightNode);
+
+        setRight(start, middle);
+        if (middle != NIL){
+            setParent(middle, start);
+        }
+        setLeft(rightNode, start);
+        setParent(start, rightNode);
+        changeChild(originalParent, start, rightNode);
+
+        resetHeight(start);
+        resetHeight(rightNode);
+    }
+
+    final void RightRotate(int start){
+        int leftNode = getLeft(start);
+        int originalParent = getParent(start);
+        int middle = getRight(leftNode);
+
+        setLeft(start, middle);
+        if (middle != NIL){
+            setParent(middle, start);
+        }
+        setRight(leftNode, start);
+        setParent(start, leftNode);
+        changeChild(originalParent, start, leftNode);
+
+        resetHeight(start);
+        resetHeight(leftNode);
+    }
+
+    final void balance(int imbalancedNode, int child, int grandchild){
+        if (getLeft(imbalancedNode) == child){
+            if (getLeft(child) == grandchild){
+                RightRotate(imbalancedNode); // LL case
+            }
+            else { // LR case
+                LeftRotate(child);
+                RightRotate(imbalancedNode);
+            }
+        }
+        else {
+            if (getRight(child) == grandchild){
+                LeftRotate(imbalancedNode); // RR case
+            }
+            else { // RL case
+                RightRotate(child);
+                LeftRotate(imbalancedNode);
+            }
+        }
+    }
+
+    // Hang a freshly allocated node below parent (or make it the root)
+    // and restore the AVL property on the way up
+    final void attach(int parent, int newNode, boolean asLeft){
+        if (parent == NIL){
+            root = newNode;
+        }
+        else {
+            setParent(newNode, parent);
+            if (asLeft){
+                setLeft(parent, newNode);
+            }
+            else {
+                setRight(parent, newNode);
+            }
+        }
+        size++;
+
+        int imbalancedNode = parent;
+        int child = newNode;
+        int grandchild = NIL;
+        while (imbalancedNode != NIL){
+            int oldHeight = getHeight(imbalancedNode);
+            resetHeight(imbalancedNode);
+
+            if (!balanceOK(getBalance(imbalancedNode))){
+                balance(imbalancedNode, child, grandchild);
+                // one rotation fixes an insertion
+                break;
+            }
+            if (oldHeight == getHeight(imbalancedNode)){
+                // nothing above this node has changed
+                break;
+            }
+
+            grandchild = child;
+            child = imbalancedNode;
+            imbalancedNode = getParent(imbalancedNode);
+        }
+    }
+
+    // Unlink the node, release its storage and restore the AVL property
+    // from its old position up to the root
+    final void doDelete(int nodeToDelete){
+        if (getLeft(nodeToDelete) != NIL && getRight(nodeToDelete) != NIL){
+            // Has both children: take over the key of the successor,
+            // which has no left child, and delete that one instead
+            int successor = subtreeMin(getRight(nodeToDelete));
+            copyKey(successor, nodeToDelete);
+            nodeToDelete = successor;
+        }
+
+        int child = getLeft(nodeToDelete) != NIL ? getLeft(nodeToDelete) : getRight(nodeToDelete);
+        int startNode = getParent(nodeToDelete);
+        changeChild(startNode, nodeToDelete, child);
+        freeNode(nodeToDelete);
+        size--;
+
+        while (startNode != NIL){
+            resetHeight(startNode);
+
+            if (!balanceOK(getBalance(startNode))){
+                int left = getLeft(startNode), right = getRight(startNode);
+                int taller = height(left) > height(right) ? left : right;
+                int tallerLeft = getLeft(taller), tallerRight = getRight(taller);
+
+                int grandchild;
+                if (height(tallerLeft) != height(tallerRight)){
+                    grandchild = height(tallerLeft) > height(tallerRight) ? tallerLeft : tallerRight;
+                }
+                else {
+                    // on a tie, a single rotation is the one that works
+                    grandchild = taller == left ? tallerLeft : tallerRight;
+                }
+
+                balance(startNode, taller, grandchild);
+                // startNode is now below the root of the rotated subtree
+                startNode = getParent(startNode);
+            }
+            startNode = getParent(startNode);
+        }
+    }
+
+    final int subtreeMin(int node){
+        if (node != NIL){
+            while (getLeft(node) != NIL){
+                node = getLeft(node);
+            }
+        }
+        return node;
+    }
+
+    final int subtreeMax(int node){
+        if (node != NIL){
+            while (getRight(node) != NIL){
+                node = getRight(node);
+            }
+        }
+        return node;
+    }
+
+    // In-order successor, walking parent links
+    final int successor(int node){
+        if (getRight(node) != NIL){
+            return subtreeMin(getRight(node));
+        }
+        int parent = getParent(node);
+        while (parent != NIL && getRight(parent) == node){
+            node = parent;
+            parent = getParent(parent);
+        }
+        return parent;
+    }
+}
@@ -0,0 +1,134 @@
+package trees;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/* AVLTree of int keys without boxing and without an object per node.
+   Nodes live in the parallel arrays of ArrayAVLTree, the keys in one
+   more int array, so an entry costs about 17 bytes instead of the
+   ~40 bytes of an AVLNode plus 16 bytes for the Integer.
+ */
+public class IntAVLTree extends ArrayAVLTree {
+    private int[] keys;
+
+    public IntAVLTree(int initialCapacity){
+        super(initialCapacity);
+        keys = new int[left.length];
+    }
+
+    public IntAVLTree(){
+        super();
+        keys = new int[left.length];
+    }
+
+    @Override
+    void growKeys(int newCapacity){
+        keys = Arrays.copyOf(keys, newCapacity);
+    }
+
+    @Override
+    void copyKey(int from, int to){
+        keys[to] = keys[from];
+    }
+
+    // Handle of the node holding the key, or NIL
+    int findNode(int key){
+        int tmp = root;
+        while (tmp != NIL){
+            int nodeKey = keys[tmp];
+            if (key < nodeKey){
+                tmp = left[tmp];
+            }
+            else if (key > nodeKey){
+                tmp = right[tmp];
+            }
+            else {
+                break;
+            }
+        }
+        return tmp;
+    }
+
+    public boolean contains(int key){
+        return findNode(key) != NIL;
+    }
+
+    public boolean insert(int key){
+        int tmp = root;
+        int prev = NIL;
+        boolean goLeft = false;
+
+        while (tmp != NIL){
+            int nodeKey = keys[tmp];
+            prev = tmp;
+            if (key < nodeKey){
+                goLeft = true;
+                tmp = left[tmp];
+            }
+            else if (key > nodeKey){
+                goLeft = false;
+                tmp = right[tmp];
+            }
+            else {
+                return false; // key already present
+            }
+        }
+
+        int newNode = allocateNode();
+        keys[newNode] = key;
+        attach(prev, newNode, goLeft);
+        return true;
+    }
+
+    public boolean delete(int key){
+        int nodeToDelete = findNode(key);
+        if (nodeToDelete == NIL){
+            return false; // node not found
+        }
+        doDelete(nodeToDelete);
+        return true;
+    }
+
+    // Visits the keys in increasing order, without recursion
+    public void inorderTraverse(IntConsumer f){
+        for (int node = subtreeMin(root); node != NIL; node = successor(node)){
+            f.accept(keys[node]);
+        }
+    }
+
+    // The keys in increasing order
+    public int[] toArray(){
+        int[] result = new int[size];
+        int i = 0;
+        for (int node = subtreeMin(root); node != NIL; node = successor(node)){
+            result[i++] = keys[node];
+        }
+        return result;
+    }
+
+    // An immutable copy of the keys in Eytzinger order, see FrozenIntTree
+    public FrozenIntTree freeze(){
+        return new FrozenIntTree(toArray());
+    }
+
+    public static void main(String[] args){
+        // Shows how to use IntAVLTree
+        IntAVLTree tree = new IntAVLTree();
+        int[] numbersToInsert = new int[] {20, 50, 40, 45, -10, -20, 0};
+        for (int number : numbersToInsert){
+            tree.insert(number);
+        }
+
+        System.out.println("--- CREATED TREE ---");
+        tree.inorderTraverse(key -> System.out.println(key + " "));
+        System.out.println("\n--- ---");
+
+        tree.delete(50);
+        tree.delete(20);
+        System.out.println("--- DELETED 50 AND 20 ---");
+        tree.inorderTraverse(key -> System.out.println(key + " "));
+        System.out.println("\n--- ---");
+
+        System.out.println("CONTAINS 45: " + tree.contains(45) + ", CONTAINS 50: " + tree.contains(50));
+    }
+}
@@ -0,0 +1,195 @@
+package trees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/* Set of closed intervals [start, end] for overlap queries, the
+   augmented tree of CLRS 14.3: an AVLTree of the intervals ordered by
+   start (then end), where every node also keeps the largest end in its
+   subtree. The largest end is recomputed in resetHeight, so it is kept
+   up to date wherever the AVL height is: rotations, the walks of insert
+   and delete, bulk builds and joins.
+
+   A query skips every subtree whose largest end is before the query and
+   every right subtree of a node that starts after the query, so it
+   costs O(log n + k) for k reported intervals.
+ */
+public class IntervalTree<P extends Comparable<? super P>> extends AVLTree<IntervalTree.Interval<P>> {
+
+    public static final class Interval<P extends Comparable<? super P>> implements Comparable<Interval<P>> {
+        private final P start;
+        private final P end;
+
+        public Interval(P start, P end){
+            if (start.compareTo(end) > 0){
+                throw new IllegalArgumentException("Interval cannot end before it starts: [" +
+                                                   start + ", " + end + "]");
+            }
+            this.start = start;
+            this.end = end;
+        }
+
+        public P getStart(){
+            return start;
+        }
+
+        public P getEnd(){
+            return end;
+        }
+
+        public boolean contains(P point){
+            return start.compareTo(point) <= 0 && end.compareTo(point) >= 0;
+        }
+
+        public boolean overlaps(P from, P to){
+            return start.compareTo(to) <= 0 && end.compareTo(from) >= 0;
+        }
+
+        @Override
+        public int compareTo(Interval<P> other){
+            int cmpRes = start.compareTo(other.start);
+            return cmpRes != 0 ? cmpRes : end.compareTo(other.end);
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if (!(other instanceof Interval)){
+                return false;
+            }
+            Interval<?> interval = (Interval<?>) other;
+            return start.equals(interval.start) && end.equals(interval.end);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * start.hashCode() + end.hashCode();
+        }
+
+        @Override
+        public String toString(){
+            return "[" + start + ", " + end + "]";
+        }
+    }
+
+    public IntervalTree(){
+        super();
+    }
+
+    @Override
+    public IntervalNode<P> getRoot(){
+        return (IntervalNode<P>) super.getRoot();
+    }
+
+    @Override
+    protected IntervalNode<P> createNode(Interval<P> key){
+        return new IntervalNode<>(key);
+    }
+
+    @Override
+    protected IntervalTree<P> createTree(){
+        return new IntervalTree<>();
+    }
+
+    public boolean insert(P start, P end){
+        return insert(new Interval<>(start, end));
+    }
+
+    public boolean delete(P start, P end){
+        return delete(new Interval<>(start, end));
+    }
+
+    // The intervals that contain point, in order of their start
+    public List<Interval<P>> stab(P point){
+        return overlapping(point, point);
+    }
+
+    // The intervals that overlap [from, to], in order of their start
+    public List<Interval<P>> overlapping(P from, P to){
+        List<Interval<P>> result = new ArrayList<>();
+        forEachOverlapping(from, to, result::add);
+        return result;
+    }
+
+    public void forEachOverlapping(P from, P to, Consumer<? super Interval<P>> action){
+        if (from.compareTo(to) > 0){
+            throw new IllegalArgumentException("Query cannot end before it starts: [" + from + ", " + to + "]");
+        }
+        forEachOverlapping(getRoot(), from, to, action);
+    }
+
+    private static <P extends Comparable<? super P>> void forEachOverlapping(IntervalNode<P> node, P from, P to,
+                                                                           Consumer<? super Interval<P>> action){
+        // the recursion only goes as deep as the tree is high
+        while (node != null && node.maxEnd.compareTo(from) >= 0){
+            forEachOverlapping(node.getLeft(), from, to, action);
+            Interval<P> interval = node.getKey();
+            if (interval.start.compareTo(to) > 0){
+                return; // everything to the right starts even later
+            }
+            if (interval.end.compareTo(from) >= 0){
+                action.accept(interval);
+            }
+            node = node.getRight();
+        }
+    }
+
+    // Some interval that overlaps [from, to], null if there is none; O(log n)
+    public Interval<P> anyOverlapping(P from, P to){
+        IntervalNode<P> node = getRoot();
+        while (node != null){
+            Interval<P> interval = node.getKey();
+            if (interval.overlaps(from, to)){
+                return interval;
+            }
+            // if the left subtree reaches from, either an interval there
+            // overlaps or everything on the right starts after to
+            IntervalNode<P> left = node.getLeft();
+            node = left != null && left.maxEnd.compareTo(from) >= 0 ? left : node.getRight();
+        }
+        return null;
+    }
+
+    protected static final class IntervalNode<P extends Comparable<? super P>> extends AVLTree.AVLNode<Interval<P>> {
+        // largest end of an interval in the subtree
+        private P maxEnd;
+
+        public IntervalNode(Interval<P> key){
+            super(key);
+            maxEnd = key.end;
+        }
+
+        public P getMaxEnd(){
+            return maxEnd;
+        }
+
+        @Override
+        public IntervalNode<P> getLeft(){
+            return (IntervalNode<P>) super.getLeft();
+        }
+
+        @Override
+        public IntervalNode<P> getRight(){
+            return (IntervalNode<P>) super.getRight();
+        }
+
+        @Override
+        public IntervalNode<P> getParent(){
+            return (IntervalNode<P>) super.getParent();
+        }
+
+        @Override
+        public void resetHeight(){
+            super.resetHeight();
+            P max = getKey().end;
+            IntervalNode<P> left = getLeft(), right = getRight();
+            if (left != null && left.maxEnd.compareTo(max) > 0){
+                max = left.maxEnd;
+            }
+            if (right != null && right.maxEnd.compareTo(max) > 0){
+                max = right.maxEnd;
+            }
+            maxEnd = max;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package trees;
+
+import java.nio.ByteBuffer;
+
+/* Fixed-width binary encoding of keys, for trees that keep their nodes
+   outside of the Java heap. compare has to agree with the order of the
+   decoded keys, and should not decode the stored key if it can help it,
+   since it runs on every step of a search.
+ */
+public interface KeyCodec<E> {
+    // Number of bytes every encoded key takes
+    int width();
+
+    void write(ByteBuffer buffer, int offset, E key);
+
+    E read(ByteBuffer buffer, int offset);
+
+    // Compare the key stored at offset with the given key
+    int compare(ByteBuffer buffer, int offset, E key);
+
+    KeyCodec<Integer> INT = new KeyCodec<Integer>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer key) {
+            buffer.putInt(offset, key);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Integer key) {
+            return Integer.compare(buffer.getInt(offset), key);
+        }
+    };
+
+    KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long key) {
+            buffer.putLong(offset, key);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Long key) {
+            return Long.compare(buffer.getLong(offset), key);
+        }
+    };
+}
@@ -0,0 +1,32 @@
+package trees;
+
+import java.util.Comparator;
+
+/* Key comparison for the trees that keep a Comparator that may be null
+   for natural ordering. BSTree specializes its comparisons by key class
+   (see BSTree.compareKeys) but falls back to compareComparable as well,
+   so all trees agree on what an incomparable key is.
+ */
+final class Keys {
+    private Keys(){
+    }
+
+    // Compare with cmp, or by natural ordering if cmp is null
+    static <E> int compare(Comparator<? super E> cmp, E key1, E key2){
+        if (cmp != null){
+            return cmp.compare(key1, key2);
+        }
+        return compareComparable(key1, key2);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> int compareComparable(E key1, E key2){
+        try {
+            return ((Comparable<E>) key1).compareTo(key2);
+        }
+        catch (ClassCastException e){
+            throw new IllegalArgumentException("Keys must either implement Comparable<E> " +
+                                               "or a Comparator<E> has to be given ");
+        }
+    }
+}
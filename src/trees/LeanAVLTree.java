@@ -0,0 +1,349 @@
+package trees;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/* AVLTree with smaller nodes and fewer writes per operation. A node has
+   no parent pointer and keeps a balance factor (-1, 0 or 1) in a byte
+   instead of the height and size ints of an AVLNode: 32 bytes (with
+   compressed oops) instead of 40.
+
+   Without parent pointers, insert and delete remember the search path
+   in an array and retrace it upwards. The retracing stops as soon as a
+   subtree keeps its height, and rotations set the child fields
+   directly. There is no changeChild, no key comparison while relinking
+   and no instanceof check in the setters.
+
+   The price is the API: there are no nodes to hand out, so no rank,
+   select or split, and iterators keep a stack.
+ */
+public class LeanAVLTree<E> implements Iterable<E> {
+    // An AVL tree of 2^31 keys is less than 1.45 * 31 < 46 levels high
+    private static final int MAX_HEIGHT = 48;
+
+    private final Comparator<? super E> cmp;
+    private LeanNode<E> root;
+    private int size;
+
+    // The last search path: path[i] and the side taken from it (-1 left,
+    // 1 right); kept between operations so that they do not allocate
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final LeanNode<E>[] path = (LeanNode<E>[]) new LeanNode[MAX_HEIGHT];
+    private final byte[] sides = new byte[MAX_HEIGHT];
+    // path[0 .. pathUsed) may still hold nodes, see clearPath
+    private int pathUsed;
+
+    public LeanAVLTree(Comparator<? super E> cmp){
+        this.cmp = cmp;
+    }
+
+    public LeanAVLTree(){
+        this(null);
+    }
+
+    private static final class LeanNode<E> {
+        E key;
+        LeanNode<E> left;
+        LeanNode<E> right;
+        // height(right) - height(left)
+        byte balance;
+
+        LeanNode(E key){
+            this.key = key;
+        }
+    }
+
+    private int compareKeys(E key1, E key2){
+        return Keys.compare(cmp, key1, key2);
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public boolean contains(E key){
+        LeanNode<E> tmp = root;
+        while (tmp != null){
+            int cmpRes = compareKeys(key, tmp.key);
+            if (cmpRes == 0){
+                return true;
+            }
+            tmp = cmpRes < 0 ? tmp.left : tmp.right;
+        }
+        return false;
+    }
+
+    public boolean insert(E key){
+        LeanNode<E> tmp = root;
+        int depth = 0;
+        while (tmp != null){
+            int cmpRes = compareKeys(key, tmp.key);
+            if (cmpRes == 0){
+                pathUsed = Math.max(pathUsed, depth);
+                return false; // key already present
+            }
+            path[depth] = tmp;
+            if (cmpRes < 0){
+                sides[depth++] = -1;
+                tmp = tmp.left;
+            }
+            else {
+                sides[depth++] = 1;
+                tmp = tmp.right;
+            }
+        }
+
+        LeanNode<E> newNode = new LeanNode<>(key);
+        size++;
+        if (depth == 0){
+            root = newNode;
+            return true;
+        }
+        setChild(depth - 1, newNode);
+
+        // the subtree on the path below path[i] grew by one level
+        for (int i = depth - 1; i >= 0; i--){
+            LeanNode<E> node = path[i];
+            int balance = node.balance + sides[i];
+            if (balance == 0){
+                node.balance = 0;
+                break; // the shorter side caught up, the height stays
+            }
+            if (balance == 1 || balance == -1){
+                node.balance = (byte) balance;
+                continue; // node grew as well
+            }
+            // a rotation brings the subtree back to its old height
+            setChild(i - 1, rotate(node, balance));
+            break;
+        }
+        pathUsed = Math.max(pathUsed, depth);
+        return true;
+    }
+
+    public boolean delete(E key){
+        LeanNode<E> tmp = root;
+        int depth = 0;
+        while (tmp != null){
+            int cmpRes = compareKeys(key, tmp.key);
+            if (cmpRes == 0){
+                break;
+            }
+            path[depth] = tmp;
+            if (cmpRes < 0){
+                sides[depth++] = -1;
+                tmp = tmp.left;
+            }
+            else {
+                sides[depth++] = 1;
+                tmp = tmp.right;
+            }
+        }
+        if (tmp == null){
+            pathUsed = Math.max(pathUsed, depth);
+            return false; // node not found
+        }
+
+        // With both children, the successor is taken out instead and its
+        // key moves into the node
+        LeanNode<E> removed = tmp;
+        if (tmp.left != null && tmp.right != null){
+            path[depth] = tmp;
+            sides[depth++] = 1;
+            removed = tmp.right;
+            while (removed.left != null){
+                path[depth] = removed;
+                sides[depth++] = -1;
+                removed = removed.left;
+            }
+            tmp.key = removed.key;
+        }
+        setChild(depth - 1, removed.left != null ? removed.left : removed.right);
+        size--;
+
+        // the subtree on the path below path[i] lost a level
+        for (int i = depth - 1; i >= 0; i--){
+            LeanNode<E> node = path[i];
+            int balance = node.balance - sides[i];
+            if (balance == 1 || balance == -1){
+                node.balance = (byte) balance;
+                break; // it was balanced, the height stays
+            }
+            if (balance == 0){
+                node.balance = 0;
+                continue; // the taller side shrank, so did node
+            }
+            LeanNode<E> subtreeRoot = rotate(node, balance);
+            setChild(i - 1, subtreeRoot);
+            if (subtreeRoot.balance != 0){
+                break; // single rotation around a balanced child keeps the height
+            }
+        }
+        clearPath(depth);
+        return true;
+    }
+
+    // Make child the child of path[i] on the side the path took from it;
+    // the root for i = -1
+    private void setChild(int i, LeanNode<E> child){
+        if (i < 0){
+            root = child;
+        }
+        else if (sides[i] < 0){
+            path[i].left = child;
+        }
+        else {
+            path[i].right = child;
+        }
+    }
+
+    /* After a delete, drop what path holds, so that it does not keep
+       removed nodes and their keys reachable. Other operations only leave
+       nodes of the tree in it, and do not pay for clearing it.
+     */
+    private void clearPath(int depth){
+        for (int i = Math.max(depth, pathUsed) - 1; i >= 0; i--){
+            path[i] = null;
+        }
+        pathUsed = 0;
+    }
+
+    /* Rebalance a node whose balance would be +-2; returns the new root of
+       its subtree, with all balances set.
+     */
+    private static <E> LeanNode<E> rotate(LeanNode<E> node, int balance){
+        if (balance > 0){
+            LeanNode<E> right = node.right;
+            if (right.balance >= 0){ // RR case
+                node.right = right.left;
+                right.left = node;
+                if (right.balance == 0){ // only after a delete
+                    node.balance = 1;
+                    right.balance = -1;
+                }
+                else {
+                    node.balance = 0;
+                    right.balance = 0;
+                }
+                return right;
+            }
+            // RL case
+            LeanNode<E> pivot = right.left;
+            node.right = pivot.left;
+            right.left = pivot.right;
+            pivot.left = node;
+            pivot.right = right;
+            node.balance = (byte) (pivot.balance > 0 ? -1 : 0);
+            right.balance = (byte) (pivot.balance < 0 ? 1 : 0);
+            pivot.balance = 0;
+            return pivot;
+        }
+        else {
+            LeanNode<E> left = node.left;
+            if (left.balance <= 0){ // LL case
+                node.left = left.right;
+                left.right = node;
+                if (left.balance == 0){ // only after a delete
+                    node.balance = -1;
+                    left.balance = 1;
+                }
+                else {
+                    node.balance = 0;
+                    left.balance = 0;
+                }
+                return left;
+            }
+            // LR case
+            LeanNode<E> pivot = left.right;
+            node.left = pivot.right;
+            left.right = pivot.left;
+            pivot.right = node;
+            pivot.left = left;
+            node.balance = (byte) (pivot.balance < 0 ? 1 : 0);
+            left.balance = (byte) (pivot.balance > 0 ? -1 : 0);
+            pivot.balance = 0;
+            return pivot;
+        }
+    }
+
+    // Smallest key in the tree, null if it is empty
+    public E first(){
+        LeanNode<E> tmp = root;
+        if (tmp == null){
+            return null;
+        }
+        while (tmp.left != null){
+            tmp = tmp.left;
+        }
+        return tmp.key;
+    }
+
+    // Largest key in the tree, null if it is empty
+    public E last(){
+        LeanNode<E> tmp = root;
+        if (tmp == null){
+            return null;
+        }
+        while (tmp.right != null){
+            tmp = tmp.right;
+        }
+        return tmp.key;
+    }
+
+    // Number of levels, 0 for an empty tree
+    public int height(){
+        int height = 0;
+        for (LeanNode<E> tmp = root; tmp != null; tmp = tmp.balance > 0 ? tmp.right : tmp.left){
+            height++;
+        }
+        return height;
+    }
+
+    @Override
+    public Iterator<E> iterator(){
+        return new LeanIterator();
+    }
+
+    // In key order; the nodes whose left subtree is being visited wait on a stack
+    private class LeanIterator implements Iterator<E> {
+        private final ArrayDeque<LeanNode<E>> stack = new ArrayDeque<>();
+
+        LeanIterator(){
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(LeanNode<E> node){
+            for (; node != null; node = node.left){
+                stack.push(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next(){
+            if (stack.isEmpty()){
+                throw new NoSuchElementException();
+            }
+            LeanNode<E> node = stack.pop();
+            pushLeftSpine(node.right);
+            return node.key;
+        }
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (E key : this){
+            f.apply(key);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package trees;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/* AVLTree whose nodes live in direct (off-heap) ByteBuffers.
+   Every node is a fixed-size record
+
+       | left | right | parent | height | key ...      |
+       0      4       8        12       16             16 + codec.width()
+
+   where left/right/parent are node handles (record numbers, NIL = -1).
+   The records are kept in chunks of CHUNK_RECORDS, so the only heap
+   objects are the chunk buffers themselves and the GC work does not
+   grow with the number of keys. Balancing is the one of HandleAVLTree.
+
+   The memory of the chunks is released when the tree becomes garbage
+   (or on clear()), as for any direct ByteBuffer.
+ */
+public class OffHeapAVLTree<E> extends HandleAVLTree {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 4;
+    private static final int PARENT = 8;
+    private static final int HEIGHT = 12;
+    private static final int KEY = 16;
+
+    private final KeyCodec<E> codec;
+    private final int recordSize;
+
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+    // next never used record and head of the list of freed records
+    private int nextRecord;
+    private int freeList = NIL;
+
+    public OffHeapAVLTree(KeyCodec<E> codec){
+        if (codec.width() <= 0 || codec.width() > Integer.MAX_VALUE / CHUNK_RECORDS - KEY - 3){
+            throw new IllegalArgumentException("Unsupported key width " + codec.width());
+        }
+        this.codec = codec;
+        // keep the int fields of the next record aligned
+        this.recordSize = (KEY + codec.width() + 3) & ~3;
+    }
+
+    private ByteBuffer chunk(int node){
+        return chunks[node >>> CHUNK_SHIFT];
+    }
+
+    private int offset(int node){
+        return (node & CHUNK_MASK) * recordSize;
+    }
+
+    @Override
+    int getLeft(int node){
+        return chunk(node).getInt(offset(node) + LEFT);
+    }
+
+    @Override
+    void setLeft(int node, int left){
+        chunk(node).putInt(offset(node) + LEFT, left);
+    }
+
+    @Override
+    int getRight(int node){
+        return chunk(node).getInt(offset(node) + RIGHT);
+    }
+
+    @Override
+    void setRight(int node, int right){
+        chunk(node).putInt(offset(node) + RIGHT, right);
+    }
+
+    @Override
+    int getParent(int node){
+        return chunk(node).getInt(offset(node) + PARENT);
+    }
+
+    @Override
+    void setParent(int node, int parent){
+        chunk(node).putInt(offset(node) + PARENT, parent);
+    }
+
+    @Override
+    int getHeight(int node){
+        return chunk(node).getInt(offset(node) + HEIGHT);
+    }
+
+    @Override
+    void setHeight(int node, int height){
+        chunk(node).putInt(offset(node) + HEIGHT, height);
+    }
+
+    @Override
+    int allocateNode(){
+        int node;
+        if (freeList != NIL){
+            node = freeList;
+            freeList = getLeft(node);
+        }
+        else {
+            if (nextRecord == Integer.MAX_VALUE){
+                throw new IllegalStateException("Tree is full");
+            }
+            if ((nextRecord >>> CHUNK_SHIFT) == chunkCount){
+                addChunk();
+            }
+            node = nextRecord++;
+        }
+
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        chunk.putInt(offset + LEFT, NIL);
+        chunk.putInt(offset + RIGHT, NIL);
+        chunk.putInt(offset + PARENT, NIL);
+        chunk.putInt(offset + HEIGHT, 1);
+        return node;
+    }
+
+    private void addChunk(){
+        if (chunkCount == chunks.length){
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_RECORDS * recordSize)
+                                         .order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    void freeNode(int node){
+        setLeft(node, freeList);
+        freeList = node;
+    }
+
+    @Override
+    void copyKey(int from, int to){
+        ByteBuffer src = chunk(from), dst = chunk(to);
+        int srcOffset = offset(from) + KEY, dstOffset = offset(to) + KEY;
+        for (int i = 0; i < codec.width(); i++){
+            dst.put(dstOffset + i, src.get(srcOffset + i));
+        }
+    }
+
+    // Drops all nodes and the chunks that held them
+    public void clear(){
+        Arrays.fill(chunks, null);
+        chunkCount = 0;
+        nextRecord = 0;
+        freeList = NIL;
+        root = NIL;
+        size = 0;
+    }
+
+    private int compareKey(int node, E key){
+        return codec.compare(chunk(node), offset(node) + KEY, key);
+    }
+
+    // Handle of the node holding the key, or NIL
+    int findNode(E key){
+        int tmp = root;
+        while (tmp != NIL){
+            int cmpRes = compareKey(tmp, key);
+            if (cmpRes == 0){
+                break;
+            }
+            else if (cmpRes > 0){
+                tmp = getLeft(tmp);
+            }
+            else {
+                tmp = getRight(tmp);
+            }
+        }
+        return tmp;
+    }
+
+    public boolean contains(E key){
+        return findNode(key) != NIL;
+    }
+
+    public boolean insert(E key){
+        int tmp = root;
+        int prev = NIL;
+        int cmpRes = 0;
+
+        while (tmp != NIL){
+            cmpRes = compareKey(tmp, key);
+            if (cmpRes == 0){
+                return false; // key already present
+            }
+            prev = tmp;
+            tmp = cmpRes > 0 ? getLeft(tmp) : getRight(tmp);
+        }
+
+        int newNode = allocateNode();
+        codec.write(chunk(newNode), offset(newNode) + KEY, key);
+        attach(prev, newNode, cmpRes > 0);
+        return true;
+    }
+
+    public boolean delete(E key){
+        int nodeToDelete = findNode(key);
+        if (nodeToDelete == NIL){
+            return false; // node not found
+        }
+        doDelete(nodeToDelete);
+        return true;
+    }
+
+    // Visits the keys in increasing order; every key is decoded on the way
+    public void inorderTraverse(Consumer<? super E> f){
+        for (int node = subtreeMin(root); node != NIL; node = successor(node)){
+            f.accept(codec.read(chunk(node), offset(node) + KEY));
+        }
+    }
+}
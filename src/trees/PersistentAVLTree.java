@@ -0,0 +1,368 @@
+package trees;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/* AVL tree whose nodes are never changed once another version can see
+   them. Nodes have no parent pointers, so a subtree can be shared by
+   many versions: insert and delete copy only the nodes on the path from
+   the root to the change (plus the few a rotation touches), which is at
+   most about 1.44 log2(n) + 2 nodes per update, and everything else is
+   shared with the previous version.
+
+   snapshot() is O(1): it just keeps the current root. A snapshot never
+   changes, so it can be handed to any number of reader threads, which
+   need no locks, while the writer goes on updating the tree. The tree
+   itself is meant for one writer thread.
+
+   Between beginBatch() and endBatch() the tree is transient: nodes that
+   were created during the batch belong to it and are changed in place
+   instead of being copied again, so a batch of updates only copies each
+   shared node once. Taking a snapshot in the middle of a batch ends the
+   ownership of everything created so far, so the snapshot stays valid.
+ */
+public class PersistentAVLTree<E> implements Iterable<E> {
+    private final Comparator<E> cmp;
+    private Node<E> root;
+    // owner of the nodes that may be changed in place; null outside of
+    // batches and updates
+    private Object edit;
+    // set by insert/delete when they changed something
+    private boolean modified;
+
+    static final class Node<E> {
+        E key;
+        Node<E> left;
+        Node<E> right;
+        int height;
+        int size;
+        final Object edit;
+
+        Node(E key, Node<E> left, Node<E> right, Object edit){
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.edit = edit;
+            update();
+        }
+
+        void update(){
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    /* A read-only version of the tree. Its nodes are never changed again,
+       so it is safe to read from any thread once it has been handed over.
+     */
+    public static final class Snapshot<E> implements Iterable<E> {
+        private final Comparator<E> cmp;
+        private final Node<E> root;
+
+        private Snapshot(Comparator<E> cmp, Node<E> root){
+            this.cmp = cmp;
+            this.root = root;
+        }
+
+        public boolean contains(E key){
+            return PersistentAVLTree.contains(cmp, root, key);
+        }
+
+        public int size(){
+            return PersistentAVLTree.size(root);
+        }
+
+        public boolean isEmpty(){
+            return root == null;
+        }
+
+        @Override
+        public Iterator<E> iterator(){
+            return new InorderIterator<>(root);
+        }
+
+        public void inorderTraverse(Function<E, Void> f){
+            for (E key : this){
+                f.apply(key);
+            }
+        }
+
+        // A tree that starts out with the keys of this snapshot; O(1)
+        public PersistentAVLTree<E> toTree(){
+            return new PersistentAVLTree<>(cmp, root);
+        }
+    }
+
+    public PersistentAVLTree(Comparator<E> cmp){
+        this(cmp, null);
+    }
+
+    public PersistentAVLTree(){
+        this(null, null);
+    }
+
+    private PersistentAVLTree(Comparator<E> cmp, Node<E> root){
+        this.cmp = cmp;
+        this.root = root;
+    }
+
+    private static int height(Node<?> node){
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node){
+        return node == null ? 0 : node.size;
+    }
+
+    private static <E> boolean contains(Comparator<E> cmp, Node<E> node, E key){
+        while (node != null){
+            int cmpRes = Keys.compare(cmp, node.key, key);
+            if (cmpRes == 0){
+                return true;
+            }
+            node = cmpRes > 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    public Snapshot<E> snapshot(){
+        if (edit != null){
+            // nodes of the batch so far are now shared with the snapshot
+            edit = new Object();
+        }
+        return new Snapshot<>(cmp, root);
+    }
+
+    public void beginBatch(){
+        if (edit == null){
+            edit = new Object();
+        }
+    }
+
+    public void endBatch(){
+        edit = null;
+    }
+
+    public boolean contains(E key){
+        return contains(cmp, root, key);
+    }
+
+    public int size(){
+        return size(root);
+    }
+
+    public boolean isEmpty(){
+        return root == null;
+    }
+
+    public boolean insert(E key){
+        Object previousEdit = startUpdate();
+        try {
+            root = insert(root, key);
+            return modified;
+        }
+        finally {
+            edit = previousEdit;
+        }
+    }
+
+    public boolean delete(E key){
+        Object previousEdit = startUpdate();
+        try {
+            root = delete(root, key);
+            return modified;
+        }
+        finally {
+            edit = previousEdit;
+        }
+    }
+
+    // Outside a batch every update gets an owner of its own, so the nodes
+    // it copies can still be changed by its own rotations, but not by
+    // any later update
+    private Object startUpdate(){
+        modified = false;
+        Object previousEdit = edit;
+        if (edit == null){
+            edit = new Object();
+        }
+        return previousEdit;
+    }
+
+    @Override
+    public Iterator<E> iterator(){
+        return new InorderIterator<>(root);
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (E key : this){
+            f.apply(key);
+        }
+    }
+
+    // node itself if the current update or batch owns it, a copy otherwise
+    private Node<E> editable(Node<E> node){
+        if (node.edit == edit){
+            return node;
+        }
+        return new Node<>(node.key, node.left, node.right, edit);
+    }
+
+    // A child the batch owns may come back as the same node with new
+    // contents, so whether anything changed is told by "modified"
+    private Node<E> insert(Node<E> node, E key){
+        if (node == null){
+            modified = true;
+            return new Node<>(key, null, null, edit);
+        }
+
+        int cmpRes = Keys.compare(cmp, node.key, key);
+        if (cmpRes == 0){
+            return node; // key already present
+        }
+        else if (cmpRes > 0){
+            Node<E> left = insert(node.left, key);
+            if (!modified){
+                return node;
+            }
+            node = editable(node);
+            node.left = left;
+        }
+        else {
+            Node<E> right = insert(node.right, key);
+            if (!modified){
+                return node;
+            }
+            node = editable(node);
+            node.right = right;
+        }
+        return balance(node);
+    }
+
+    private Node<E> delete(Node<E> node, E key){
+        if (node == null){
+            return null; // key not found
+        }
+
+        int cmpRes = Keys.compare(cmp, node.key, key);
+        if (cmpRes > 0){
+            Node<E> left = delete(node.left, key);
+            if (!modified){
+                return node;
+            }
+            node = editable(node);
+            node.left = left;
+        }
+        else if (cmpRes < 0){
+            Node<E> right = delete(node.right, key);
+            if (!modified){
+                return node;
+            }
+            node = editable(node);
+            node.right = right;
+        }
+        else {
+            modified = true;
+            if (node.left == null){
+                return node.right;
+            }
+            if (node.right == null){
+                return node.left;
+            }
+            // has both children: take over the key of the successor
+            Node<E> successor = node.right;
+            while (successor.left != null){
+                successor = successor.left;
+            }
+            Node<E> right = deleteMin(node.right);
+            node = editable(node);
+            node.key = successor.key;
+            node.right = right;
+        }
+        return balance(node);
+    }
+
+    private Node<E> deleteMin(Node<E> node){
+        if (node.left == null){
+            return node.right;
+        }
+        Node<E> left = deleteMin(node.left);
+        node = editable(node);
+        node.left = left;
+        return balance(node);
+    }
+
+    // node is editable, its children are balanced
+    private Node<E> balance(Node<E> node){
+        node.update();
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1){
+            if (height(node.left.left) < height(node.left.right)){
+                node.left = LeftRotate(node.left); // LR case
+            }
+            return RightRotate(node);
+        }
+        else if (balance < -1){
+            if (height(node.right.right) < height(node.right.left)){
+                node.right = RightRotate(node.right); // RL case
+            }
+            return LeftRotate(node);
+        }
+        return node;
+    }
+
+    // Both return the new root of the subtree
+    private Node<E> LeftRotate(Node<E> node){
+        node = editable(node);
+        Node<E> right = editable(node.right);
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        right.update();
+        return right;
+    }
+
+    private Node<E> RightRotate(Node<E> node){
+        node = editable(node);
+        Node<E> left = editable(node.left);
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        left.update();
+        return left;
+    }
+
+    // Without parent pointers the path back up is kept on a stack
+    private static final class InorderIterator<E> implements Iterator<E> {
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+
+        InorderIterator(Node<E> root){
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<E> node){
+            while (node != null){
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext(){
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next(){
+            if (stack.isEmpty()){
+                throw new NoSuchElementException();
+            }
+            Node<E> node = stack.pop();
+            pushLeft(node.right);
+            return node.key;
+        }
+    }
+}
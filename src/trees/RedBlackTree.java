@@ -0,0 +1,248 @@
+package trees;
+
+import java.util.Comparator;
+
+/* Red-black tree on top of BSTree. Every node is red or black, a red node
+   has no red children and all paths from a node down to a null link have
+   the same number of black nodes, so the tree is at most 2 log2(n + 1)
+   high. It is less strictly balanced than AVLTree, but an insert does at
+   most two rotations and a delete at most three; the rest of the fix-up
+   only recolors.
+ */
+public class RedBlackTree<E> extends BSTree<E> {
+    @Override
+    public RBNode<E> getRoot(){
+        return (RBNode<E>) super.getRoot();
+    }
+
+    public RedBlackTree(){
+        super();
+    }
+
+    public RedBlackTree(Comparator<E> cmp){
+        super(cmp);
+    }
+
+    @Override
+    protected RBNode<E> createNode(E key){
+        return new RBNode<E>(key);
+    }
+
+    @Override
+    protected void initNode(Node<E> node){
+        ((RBNode<E>) node).red = true;
+    }
+
+    @Override
+    protected RedBlackTree<E> createTree(){
+        return new RedBlackTree<>(comparator());
+    }
+
+    /* Bulk builds link perfectly balanced subtrees bottom-up. The left
+       subtree of such a tree is never lower than the right one, so the
+       height of a node is the length of its left spine. A tree with AVL
+       balance becomes a valid red-black tree by painting red exactly the
+       nodes of odd height whose parent has even height (even and odd rank
+       if leaves have rank 0).
+     */
+    @Override
+    protected void resetNode(Node<E> node){
+        RBNode<E> rbNode = (RBNode<E>) node;
+        rbNode.red = false;
+        if ((spineHeight(rbNode) & 1) == 0){
+            if (rbNode.getLeft() != null){
+                rbNode.getLeft().red = (spineHeight(rbNode.getLeft()) & 1) == 1;
+            }
+            if (rbNode.getRight() != null){
+                rbNode.getRight().red = (spineHeight(rbNode.getRight()) & 1) == 1;
+            }
+        }
+    }
+
+    private static int spineHeight(RBNode<?> node){
+        int height = 0;
+        for (; node != null; node = node.getLeft()){
+            height++;
+        }
+        return height;
+    }
+
+    @Override
+    public boolean insert(E key){
+        RBNode<E> newNode = (RBNode<E>) obtainNode(key);
+        boolean success = doInsert(newNode);
+        if (success){
+            insertFixup(newNode);
+        }
+        else {
+            releaseNode(newNode);
+        }
+        return success;
+    }
+
+    // node is red; the only possible violation is that its parent is red too
+    private void insertFixup(RBNode<E> node){
+        while (isRed(node.getParent())){
+            RBNode<E> parent = node.getParent();
+            RBNode<E> grandparent = parent.getParent(); // exists, the root is black
+            if (parent.isLeftChildOf(grandparent)){
+                RBNode<E> uncle = grandparent.getRight();
+                if (isRed(uncle)){
+                    // push the blackness down from the grandparent
+                    parent.red = false;
+                    uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                }
+                else {
+                    if (node.isRightChildOf(parent)){
+                        LeftRotate(parent);
+                        node = parent;
+                        parent = node.getParent();
+                    }
+                    parent.red = false;
+                    grandparent.red = true;
+                    RightRotate(grandparent);
+                }
+            }
+            else {
+                RBNode<E> uncle = grandparent.getLeft();
+                if (isRed(uncle)){
+                    parent.red = false;
+                    uncle.red = false;
+                    grandparent.red = true;
+                    node = grandparent;
+                }
+                else {
+                    if (node.isLeftChildOf(parent)){
+                        RightRotate(parent);
+                        node = parent;
+                        parent = node.getParent();
+                    }
+                    parent.red = false;
+                    grandparent.red = true;
+                    LeftRotate(grandparent);
+                }
+            }
+        }
+        getRoot().red = false;
+    }
+
+    @Override
+    public boolean delete(E key){
+        Node<E> nodeToDelete = find(key);
+        if (nodeToDelete == null){
+            return false; // node not found
+        }
+
+        RBNode<E> removed = (RBNode<E>) unlinkedBy(nodeToDelete);
+        RBNode<E> parent = removed.getParent();
+        RBNode<E> child = removed.getLeft() != null ? removed.getLeft() : removed.getRight();
+        doDelete(nodeToDelete, removed);
+        if (!removed.red){
+            deleteFixup(child, parent);
+        }
+        releaseNode(removed);
+        return true;
+    }
+
+    /* node (possibly null) took the place of a black node, so the paths
+       through it are one black node short. parent is its parent, which
+       cannot be read from a null node.
+     */
+    private void deleteFixup(RBNode<E> node, RBNode<E> parent){
+        while (node != getRoot() && !isRed(node)){
+            if (node == parent.getLeft()){
+                RBNode<E> sibling = parent.getRight();
+                if (isRed(sibling)){
+                    sibling.red = false;
+                    parent.red = true;
+                    LeftRotate(parent);
+                    sibling = parent.getRight();
+                }
+                if (!isRed(sibling.getLeft()) && !isRed(sibling.getRight())){
+                    // the sibling's side gives up one black, the problem moves up
+                    sibling.red = true;
+                    node = parent;
+                    parent = node.getParent();
+                }
+                else {
+                    if (!isRed(sibling.getRight())){
+                        sibling.getLeft().red = false;
+                        sibling.red = true;
+                        RightRotate(sibling);
+                        sibling = parent.getRight();
+                    }
+                    sibling.red = parent.red;
+                    parent.red = false;
+                    sibling.getRight().red = false;
+                    LeftRotate(parent);
+                    node = getRoot();
+                }
+            }
+            else {
+                RBNode<E> sibling = parent.getLeft();
+                if (isRed(sibling)){
+                    sibling.red = false;
+                    parent.red = true;
+                    RightRotate(parent);
+                    sibling = parent.getLeft();
+                }
+                if (!isRed(sibling.getLeft()) && !isRed(sibling.getRight())){
+                    sibling.red = true;
+                    node = parent;
+                    parent = node.getParent();
+                }
+                else {
+                    if (!isRed(sibling.getLeft())){
+                        sibling.getRight().red = false;
+                        sibling.red = true;
+                        LeftRotate(sibling);
+                        sibling = parent.getLeft();
+                    }
+                    sibling.red = parent.red;
+                    parent.red = false;
+                    sibling.getLeft().red = false;
+                    RightRotate(parent);
+                    node = getRoot();
+                }
+            }
+        }
+        if (node != null){
+            node.red = false;
+        }
+    }
+
+    // null links count as black
+    private static boolean isRed(RBNode<?> node){
+        return node != null && node.red;
+    }
+
+    protected static class RBNode<E> extends BSTree.Node<E> {
+        // new nodes are red, so inserting one does not change black heights
+        private boolean red = true;
+
+        public RBNode(E key){
+            super(key);
+        }
+
+        public boolean isRed(){
+            return red;
+        }
+
+        @Override
+        public RBNode<E> getLeft(){
+            return (RBNode<E>) super.getLeft();
+        }
+
+        @Override
+        public RBNode<E> getRight(){
+            return (RBNode<E>) super.getRight();
+        }
+
+        @Override
+        public RBNode<E> getParent(){
+            return (RBNode<E>) super.getParent();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package trees;
+
+/* Range sums and minimums over a fixed number of long values, for static
+   ranges where an IntervalTree would be overkill. A complete binary tree
+   in two arrays, without pointers: the values are the leaves at
+   n .. 2n-1, and node i covers its children 2i and 2i+1. A query or an
+   update walks up from the leaves, O(log n) each, with no recursion and
+   no allocation.
+
+   Ranges are half-open, [from, to).
+ */
+public class SegmentTree {
+    private final int n;
+    private final long[] sums;
+    private final long[] mins;
+
+    public SegmentTree(long[] values){
+        n = values.length;
+        sums = new long[2 * n];
+        mins = new long[2 * n];
+        System.arraycopy(values, 0, sums, n, n);
+        System.arraycopy(values, 0, mins, n, n);
+        for (int i = n - 1; i > 0; i--){
+            pull(i);
+        }
+    }
+
+    private void pull(int i){
+        sums[i] = sums[2 * i] + sums[2 * i + 1];
+        mins[i] = Math.min(mins[2 * i], mins[2 * i + 1]);
+    }
+
+    public int size(){
+        return n;
+    }
+
+    public long get(int index){
+        checkIndex(index);
+        return sums[index + n];
+    }
+
+    public void set(int index, long value){
+        checkIndex(index);
+        int i = index + n;
+        sums[i] = value;
+        mins[i] = value;
+        for (i >>= 1; i > 0; i >>= 1){
+            pull(i);
+        }
+    }
+
+    // Sum of the values in [from, to), 0 for an empty range
+    public long sum(int from, int to){
+        checkRange(from, to);
+        long sum = 0;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1){
+            if ((l & 1) == 1){
+                sum += sums[l++];
+            }
+            if ((r & 1) == 1){
+                sum += sums[--r];
+            }
+        }
+        return sum;
+    }
+
+    // Smallest value in [from, to), Long.MAX_VALUE for an empty range
+    public long min(int from, int to){
+        checkRange(from, to);
+        long min = Long.MAX_VALUE;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1){
+            if ((l & 1) == 1){
+                min = Math.min(min, mins[l++]);
+            }
+            if ((r & 1) == 1){
+                min = Math.min(min, mins[--r]);
+            }
+        }
+        return min;
+    }
+
+    private void checkIndex(int index){
+        if (index < 0 || index >= n){
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + n);
+        }
+    }
+
+    private void checkRange(int from, int to){
+        if (from < 0 || to > n || from > to){
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), size: " + n);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/* Ordered set for many writers, made of AVLTree shards that each own a
+   contiguous range of keys and have their own lock. Threads that work on
+   different ranges never wait for each other; within a shard readers share
+   the lock and writers take it alone.
+
+   The ranges start out as one shard holding everything. Every shard counts
+   the writes it took since the last rebalance, and once enough writes came
+   in and one shard got more than HOT_FACTOR times its fair share of them,
+   the keys are redistributed: all shards are locked, their (already
+   sorted) contents are concatenated and the shards are rebuilt with
+   buildFromSorted. That is linear in the size of the set, but it needs at
+   least size/2 writes in between, so the cost per write stays constant.
+
+   The new bounds split the stored keys and the recent writes evenly: a
+   reservoir keeps a random sample of the keys written since the last
+   rebalance, and the sample counts as much as all stored keys together.
+   So a range that takes most of the writes, e.g. the end a stream of
+   increasing keys is appended at, is spread over several shards even if
+   it holds few keys yet. What no split can help is a single strictly
+   increasing stream: its next keys are always past every bound, so they
+   all go to the last shard, whichever bounds the sample gives (see
+   ShardedIngestBenchmark).
+
+   Iteration copies one shard at a time under its read lock, and finds
+   the next shard by key: the one that now holds the bound the previous
+   copy ended at. It is weakly consistent, also across a rebalance: a key
+   that is in the set for the whole iteration comes out exactly once,
+   keys changed meanwhile may or may not show up, and the keys come out
+   in increasing order.
+ */
+public class ShardedAVLTree<E> implements Iterable<E> {
+    private static final int HOT_FACTOR = 2;
+    // Keys to collect before the first split, and the minimum number of
+    // writes between two rebalances
+    private static final int MIN_WRITES = 1024;
+    // How often (in writes to a shard) the shard checks whether it is hot
+    private static final int CHECK_INTERVAL = 256;
+    // Size of the sample of recent writes, and how often (in writes to a
+    // shard) a written key goes into it
+    private static final int RESERVOIR_SIZE = 256;
+    private static final int SAMPLE_INTERVAL = 8;
+
+    private final Comparator<E> cmp;
+    private final Shard<E>[] shards;
+    // bounds[i] is the smallest key that goes to shard i + 1. Only replaced
+    // with all shards write-locked, so an operation that holds the lock of
+    // a shard knows the shard is still the right one if bounds did not change.
+    private volatile Object[] bounds = new Object[0];
+    private final AtomicBoolean rebalancing = new AtomicBoolean();
+    // Keys written since the last rebalance, each in a random slot, so the
+    // sample leans towards recent writes. Only written under the write lock
+    // of some shard and read by rebalance, which holds all of them; two
+    // writers may race for a slot, either key is fine.
+    private final Object[] recentWrites = new Object[RESERVOIR_SIZE];
+
+    private static final class Shard<E> {
+        final AVLTree<E> tree;
+        final StampedLock lock = new StampedLock();
+        volatile int size;
+        // writes since the last rebalance, only changed under the write lock
+        volatile int writes;
+
+        Shard(Comparator<E> cmp){
+            tree = new AVLTree<>(cmp);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedAVLTree(int shardCount, Comparator<E> cmp){
+        if (shardCount < 1){
+            throw new IllegalArgumentException("Need at least one shard, got " + shardCount);
+        }
+        this.cmp = cmp;
+        this.shards = (Shard<E>[]) new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++){
+            shards[i] = new Shard<>(cmp);
+        }
+    }
+
+    public ShardedAVLTree(int shardCount){
+        this(shardCount, null);
+    }
+
+    public ShardedAVLTree(){
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private int compareKeys(E key1, E key2){
+        return Keys.compare(cmp, key1, key2);
+    }
+
+    // Number of bounds that are <= key
+    @SuppressWarnings("unchecked")
+    private int shardIndex(Object[] bounds, E key){
+        int lo = 0, hi = bounds.length;
+        while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (compareKeys((E) bounds[mid], key) <= 0){
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /* Let every shard reuse up to maxPooledPerShard deleted nodes, see
+       BSTree.enableNodePool. A shard's pool is only touched under the
+       shard's write lock, so each writer thread works with the pool of
+       the shard it holds and the pools need no locking of their own.
+       Nodes dropped by a rebalance are not pooled.
+     */
+    public void enableNodePools(int maxPooledPerShard){
+        for (Shard<E> shard : shards){
+            long stamp = shard.lock.writeLock();
+            try {
+                shard.tree.enableNodePool(maxPooledPerShard);
+            }
+            finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    public int shardCount(){
+        return shards.length;
+    }
+
+    // Exact when no writes are in flight
+    public int size(){
+        int size = 0;
+        for (Shard<E> shard : shards){
+            size += shard.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    public boolean contains(E key){
+        while (true){
+            Object[] currentBounds = bounds;
+            Shard<E> shard = shards[shardIndex(currentBounds, key)];
+            long stamp = shard.lock.readLock();
+            try {
+                if (currentBounds == bounds){
+                    return shard.tree.find(key) != null;
+                }
+                // else a rebalance moved the key to another shard, route again
+            }
+            finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    public boolean insert(E key){
+        return update(key, true);
+    }
+
+    public boolean delete(E key){
+        return update(key, false);
+    }
+
+    private boolean update(E key, boolean insert){
+        while (true){
+            Object[] currentBounds = bounds;
+            Shard<E> shard = shards[shardIndex(currentBounds, key)];
+            boolean changed;
+            int writes;
+            long stamp = shard.lock.writeLock();
+            try {
+                if (currentBounds != bounds){
+                    continue;
+                }
+                changed = insert ? shard.tree.insert(key) : shard.tree.delete(key);
+                if (!changed){
+                    return false;
+                }
+                shard.size += insert ? 1 : -1;
+                writes = ++shard.writes;
+                if (writes % SAMPLE_INTERVAL == 0){
+                    recentWrites[ThreadLocalRandom.current().nextInt(RESERVOIR_SIZE)] = key;
+                }
+            }
+            finally {
+                shard.lock.unlockWrite(stamp);
+            }
+
+            if (writes % CHECK_INTERVAL == 0 && isHot(writes)){
+                rebalance();
+            }
+            return true;
+        }
+    }
+
+    private boolean isHot(int shardWrites){
+        long totalWrites = 0;
+        for (Shard<E> shard : shards){
+            totalWrites += shard.writes;
+        }
+        if (totalWrites < Math.max(MIN_WRITES, size() / 2)){
+            return false;
+        }
+        // before the first split every write goes to shard 0
+        return bounds.length == 0 || (long) shardWrites * shards.length > HOT_FACTOR * totalWrites;
+    }
+
+    /* Redistribute the keys evenly over the shards. Called automatically
+       when a shard gets hot; does nothing if another thread is already at
+       it or there are fewer keys than shards.
+     */
+    @SuppressWarnings("unchecked")
+    public void rebalance(){
+        if (!rebalancing.compareAndSet(false, true)){
+            return;
+        }
+        long[] stamps = new long[shards.length];
+        try {
+            // always in shard order, so two lockers cannot deadlock
+            for (int i = 0; i < shards.length; i++){
+                stamps[i] = shards[i].lock.writeLock();
+            }
+
+            List<E> keys = new ArrayList<>(size());
+            for (Shard<E> shard : shards){
+                shard.tree.inorderTraverse(key -> {
+                    keys.add(key);
+                    return null;
+                });
+                shard.writes = 0;
+            }
+            E[] sample = takeSample();
+            if (keys.size() + sample.length < shards.length){
+                return;
+            }
+
+            Object[] newBounds = splitPoints(keys, sample);
+            int from = 0;
+            for (int i = 0; i < shards.length; i++){
+                int to = i == shards.length - 1 ? keys.size() : lowerBound(keys, (E) newBounds[i]);
+                shards[i].tree.buildFromSorted(keys.subList(from, to).iterator());
+                shards[i].size = to - from;
+                from = to;
+            }
+            bounds = newBounds;
+        }
+        finally {
+            for (int i = shards.length - 1; i >= 0; i--){
+                if (stamps[i] != 0){
+                    shards[i].lock.unlockWrite(stamps[i]);
+                }
+            }
+            rebalancing.set(false);
+        }
+    }
+
+    // The sorted sample of recent writes, which is emptied
+    @SuppressWarnings("unchecked")
+    private E[] takeSample(){
+        List<E> sample = new ArrayList<>(RESERVOIR_SIZE);
+        for (int i = 0; i < RESERVOIR_SIZE; i++){
+            if (recentWrites[i] != null){
+                sample.add((E) recentWrites[i]);
+                recentWrites[i] = null;
+            }
+        }
+        E[] sorted = (E[]) sample.toArray();
+        Arrays.sort(sorted, this::compareKeys);
+        return sorted;
+    }
+
+    /* shards.length - 1 bounds that split the stored keys (weight 1 each)
+       and the sample of writes (together as heavy as the keys) into parts
+       of equal weight. Each bound is the first key of a part, so the
+       bounds do not decrease.
+     */
+    private Object[] splitPoints(List<E> keys, E[] sample){
+        long keyWeight = Math.max(1, sample.length);
+        long sampleWeight = Math.max(1, keys.size());
+        long total = keys.size() * keyWeight + sample.length * sampleWeight;
+
+        Object[] newBounds = new Object[shards.length - 1];
+        int i = 0, j = 0;
+        long weight = 0;
+        for (int b = 0; b < newBounds.length; b++){
+            long target = total * (b + 1) / shards.length;
+            while (weight < target && (i < keys.size() || j < sample.length)){
+                if (j == sample.length || (i < keys.size() && compareKeys(keys.get(i), sample[j]) <= 0)){
+                    weight += keyWeight;
+                    i++;
+                }
+                else {
+                    weight += sampleWeight;
+                    j++;
+                }
+            }
+            // the next key of the merged sequence, or the last one if all are taken
+            if (i < keys.size() && (j == sample.length || compareKeys(keys.get(i), sample[j]) <= 0)){
+                newBounds[b] = keys.get(i);
+            }
+            else if (j < sample.length){
+                newBounds[b] = sample[j];
+            }
+            else {
+                newBounds[b] = b > 0 ? newBounds[b - 1] : (i > 0 ? keys.get(i - 1) : sample[j - 1]);
+            }
+        }
+        return newBounds;
+    }
+
+    // Number of keys smaller than key
+    private int lowerBound(List<E> keys, E key){
+        int lo = 0, hi = keys.size();
+        while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (compareKeys(keys.get(mid), key) < 0){
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public Iterator<E> iterator(){
+        return new Iterator<E>() {
+            private List<E> current = new ArrayList<>();
+            private int idx = 0;
+            // the next copy starts at this key (null: at the smallest one),
+            // in whichever shard holds it by then
+            private E from;
+            private boolean lastShardCopied;
+
+            @Override
+            public boolean hasNext(){
+                while (idx == current.size()){
+                    if (lastShardCopied){
+                        return false;
+                    }
+                    copyNextShard();
+                }
+                return true;
+            }
+
+            /* Copy the keys >= from of the shard that holds from, under its
+               read lock and with the bounds unchanged, so the copy has all
+               keys from there up to the next bound. The next copy starts at
+               that bound, which finds the keys after it even if a rebalance
+               moved them to a shard this iterator has already been through.
+             */
+            @SuppressWarnings("unchecked")
+            private void copyNextShard(){
+                while (true){
+                    Object[] currentBounds = bounds;
+                    int index = from == null ? 0 : shardIndex(currentBounds, from);
+                    Shard<E> shard = shards[index];
+                    long stamp = shard.lock.readLock();
+                    try {
+                        if (currentBounds != bounds){
+                            continue; // a rebalance moved from, route again
+                        }
+                        current = new ArrayList<>();
+                        for (Iterator<E> keys = shard.tree.iterator(from, null); keys.hasNext(); ){
+                            current.add(keys.next());
+                        }
+                        idx = 0;
+                        if (index == currentBounds.length){
+                            lastShardCopied = true;
+                        }
+                        else {
+                            from = (E) currentBounds[index];
+                        }
+                        return;
+                    }
+                    finally {
+                        shard.lock.unlockRead(stamp);
+                    }
+                }
+            }
+
+            @Override
+            public E next(){
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                return current.get(idx++);
+            }
+        };
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (E key : this){
+            f.apply(key);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package trees;
+
+/* Busy-wait hint for code that spins on a version number or a flag.
+   Java 8 has no such hint, so this does nothing; the copy in src-java9
+   (picked up from the multi-release JAR on JDK 9+) calls Thread.onSpinWait.
+ */
+final class SpinWait {
+    private SpinWait(){
+    }
+
+    static void onSpinWait(){
+    }
+}
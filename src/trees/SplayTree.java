@@ -0,0 +1,100 @@
+package trees;
+
+import java.util.Comparator;
+
+/* Splay tree (Sleator and Tarjan, "Self-Adjusting Binary Search Trees",
+   1985). There is no balance information at all: every find, insert and
+   delete rotates the node it reached to the root. Operations are
+   O(log n) amortized, and recently or frequently used keys stay near
+   the root, so skewed access patterns get much shorter paths than in a
+   balanced tree. Note that find therefore changes the tree.
+ */
+public class SplayTree<E> extends BSTree<E> {
+    public SplayTree(){
+        super();
+    }
+
+    public SplayTree(Comparator<E> cmp){
+        super(cmp);
+    }
+
+    @Override
+    protected SplayTree<E> createTree(){
+        return new SplayTree<>(comparator());
+    }
+
+    // Splays the node with the key, or the last node on the search path
+    // if the key is not there
+    @Override
+    public Node<E> find(E key){
+        Node<E> tmp = getRoot();
+        Node<E> last = null;
+        while (tmp != null){
+            last = tmp;
+            int cmpRes = compareKeys(tmp.getKey(), key);
+            if (cmpRes == 0){
+                break;
+            }
+            tmp = cmpRes > 0 ? tmp.getLeft() : tmp.getRight();
+        }
+        if (last != null){
+            splay(last);
+        }
+        return tmp;
+    }
+
+    @Override
+    public boolean insert(E key){
+        Node<E> newNode = obtainNode(key);
+        boolean success = doInsert(newNode);
+        if (success){
+            splay(newNode);
+        }
+        else {
+            releaseNode(newNode);
+            find(key);
+        }
+        return success;
+    }
+
+    @Override
+    public boolean delete(E key){
+        Node<E> nodeToDelete = find(key); // now at the root
+        if (nodeToDelete == null){
+            return false; // node not found
+        }
+        Node<E> removed = unlinkedBy(nodeToDelete);
+        doDelete(nodeToDelete, removed);
+        releaseNode(removed);
+        return true;
+    }
+
+    // Rotate node up to the root, two levels at a time
+    private void splay(Node<E> node){
+        while (!node.isRoot()){
+            Node<E> parent = node.getParent();
+            Node<E> grandparent = parent.getParent();
+            if (grandparent == null){
+                rotateUp(node); // zig
+            }
+            else if (node.isLeftChildOf(parent) == parent.isLeftChildOf(grandparent)){
+                rotateUp(parent); // zig-zig
+                rotateUp(node);
+            }
+            else {
+                rotateUp(node); // zig-zag
+                rotateUp(node);
+            }
+        }
+    }
+
+    // Rotate node above its parent
+    private void rotateUp(Node<E> node){
+        if (node.isLeftChildOf(node.getParent())){
+            RightRotate(node.getParent());
+        }
+        else {
+            LeftRotate(node.getParent());
+        }
+    }
+}
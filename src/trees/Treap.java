@@ -0,0 +1,137 @@
+package trees;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Treap (Seidel and Aragon, "Randomized Search Trees", 1996): a BST on
+   the keys and a max-heap on random priorities, so its shape is that of
+   a BST built by inserting the keys in random order, whatever the real
+   order was. The expected depth is O(log n). Inserts and deletes do
+   fewer than two rotations on average, and no balance information
+   changes on the way up.
+
+   Bulk builds keep their perfectly balanced shape and heap-order the
+   random priorities of its nodes instead, as in heapsort: every node
+   trades priorities with its higher child until it is above both.
+ */
+public class Treap<E> extends BSTree<E> {
+    @Override
+    public TreapNode<E> getRoot(){
+        return (TreapNode<E>) super.getRoot();
+    }
+
+    public Treap(){
+        super();
+    }
+
+    public Treap(Comparator<E> cmp){
+        super(cmp);
+    }
+
+    @Override
+    protected TreapNode<E> createNode(E key){
+        return new TreapNode<E>(key, ThreadLocalRandom.current().nextInt());
+    }
+
+    @Override
+    protected void initNode(Node<E> node){
+        ((TreapNode<E>) node).priority = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Override
+    protected Treap<E> createTree(){
+        return new Treap<>(comparator());
+    }
+
+    /* Bulk builds link bottom-up, so both subtrees of node are heaps
+       already: sift its priority down to where it fits. Only priorities
+       move, not nodes, so the shape stays balanced, and the whole build
+       stays linear as in Floyd's heap construction.
+     */
+    @Override
+    protected void resetNode(Node<E> node){
+        TreapNode<E> tmp = (TreapNode<E>) node;
+        while (true){
+            TreapNode<E> left = tmp.getLeft(), right = tmp.getRight();
+            TreapNode<E> child = right == null || (left != null && left.priority > right.priority) ? left : right;
+            if (child == null || child.priority <= tmp.priority){
+                return;
+            }
+            int priority = tmp.priority;
+            tmp.priority = child.priority;
+            child.priority = priority;
+            tmp = child;
+        }
+    }
+
+    @Override
+    public boolean insert(E key){
+        TreapNode<E> newNode = (TreapNode<E>) obtainNode(key);
+        boolean success = doInsert(newNode);
+        if (success){
+            // rotate the new leaf up until the heap order holds again
+            while (newNode.getParent() != null && newNode.getParent().priority < newNode.priority){
+                if (newNode.isLeftChildOf(newNode.getParent())){
+                    RightRotate(newNode.getParent());
+                }
+                else {
+                    LeftRotate(newNode.getParent());
+                }
+            }
+        }
+        else {
+            releaseNode(newNode);
+        }
+        return success;
+    }
+
+    @Override
+    public boolean delete(E key){
+        TreapNode<E> nodeToDelete = (TreapNode<E>) find(key);
+        if (nodeToDelete == null){
+            return false; // node not found
+        }
+
+        // rotate it down, the child with the higher priority coming up,
+        // until it has at most one child and can simply be unlinked
+        while (nodeToDelete.getLeft() != null && nodeToDelete.getRight() != null){
+            if (nodeToDelete.getLeft().priority > nodeToDelete.getRight().priority){
+                RightRotate(nodeToDelete);
+            }
+            else {
+                LeftRotate(nodeToDelete);
+            }
+        }
+        doDelete(nodeToDelete, nodeToDelete);
+        releaseNode(nodeToDelete);
+        return true;
+    }
+
+    protected static class TreapNode<E> extends BSTree.Node<E> {
+        private int priority;
+
+        public TreapNode(E key, int priority){
+            super(key);
+            this.priority = priority;
+        }
+
+        public int getPriority(){
+            return priority;
+        }
+
+        @Override
+        public TreapNode<E> getLeft(){
+            return (TreapNode<E>) super.getLeft();
+        }
+
+        @Override
+        public TreapNode<E> getRight(){
+            return (TreapNode<E>) super.getRight();
+        }
+
+        @Override
+        public TreapNode<E> getParent(){
+            return (TreapNode<E>) super.getParent();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package trees;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Counters of what a tree does on its hot paths: comparator calls,
+   search path lengths of find and insert, AVL rotations by case and the
+   length of the rebalancing walk of AVL deletes.
+
+   Off unless the JVM runs with -Dtrees.metrics=true. ENABLED is a static
+   final constant, so when it is false the JIT drops every
+   "if (TreeMetrics.ENABLED)" block and the path counters feeding it, and
+   trees do not even allocate a TreeMetrics.
+
+   The counters are LongAdders and the maxima LongAccumulators, since
+   the parallel bulk operations (parallelBuild, filter, the parallel set
+   operations of AVLTree) compare keys and rotate in many ForkJoin
+   threads at once. Every update is counted, but a read taken while the
+   tree is busy (JMX, a monitoring thread) sees the counters at slightly
+   different moments, so they may be mutually inconsistent.
+ */
+public final class TreeMetrics implements TreeMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("trees.metrics");
+
+    // The four cases of AVLTree.balance, named after where the grandchild is
+    public enum Rotation { LL, LR, RR, RL }
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchPathTotal = new LongAdder();
+    private final LongAccumulator searchPathMax = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] rotations = new LongAdder[Rotation.values().length];
+    private final LongAdder deleteWalks = new LongAdder();
+    private final LongAdder deleteWalkTotal = new LongAdder();
+    private final LongAccumulator deleteWalkMax = new LongAccumulator(Math::max, 0);
+
+    TreeMetrics(){
+        for (int i = 0; i < rotations.length; i++){
+            rotations[i] = new LongAdder();
+        }
+    }
+
+    void comparison(){
+        comparisons.increment();
+    }
+
+    // A search that looked at pathLength nodes
+    void searchPath(int pathLength){
+        searches.increment();
+        searchPathTotal.add(pathLength);
+        searchPathMax.accumulate(pathLength);
+    }
+
+    void rotation(Rotation rotation){
+        rotations[rotation.ordinal()].increment();
+    }
+
+    // A delete that went through walkLength nodes on its way to the root
+    void deleteWalk(int walkLength){
+        deleteWalks.increment();
+        deleteWalkTotal.add(walkLength);
+        deleteWalkMax.accumulate(walkLength);
+    }
+
+    private static double average(LongAdder total, LongAdder count){
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    @Override
+    public long getComparisons(){
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getSearches(){
+        return searches.sum();
+    }
+
+    @Override
+    public double getAverageSearchPath(){
+        return average(searchPathTotal, searches);
+    }
+
+    @Override
+    public int getMaxSearchPath(){
+        return (int) searchPathMax.get();
+    }
+
+    public long getRotations(Rotation rotation){
+        return rotations[rotation.ordinal()].sum();
+    }
+
+    @Override
+    public long getRotationsLL(){
+        return getRotations(Rotation.LL);
+    }
+
+    @Override
+    public long getRotationsLR(){
+        return getRotations(Rotation.LR);
+    }
+
+    @Override
+    public long getRotationsRR(){
+        return getRotations(Rotation.RR);
+    }
+
+    @Override
+    public long getRotationsRL(){
+        return getRotations(Rotation.RL);
+    }
+
+    @Override
+    public long getDeleteWalks(){
+        return deleteWalks.sum();
+    }
+
+    @Override
+    public double getAverageDeleteWalk(){
+        return average(deleteWalkTotal, deleteWalks);
+    }
+
+    @Override
+    public int getMaxDeleteWalk(){
+        return (int) deleteWalkMax.get();
+    }
+
+    // Updates that run concurrently with a reset may survive it
+    @Override
+    public void reset(){
+        comparisons.reset();
+        searches.reset();
+        searchPathTotal.reset();
+        searchPathMax.reset();
+        for (LongAdder rotation : rotations){
+            rotation.reset();
+        }
+        deleteWalks.reset();
+        deleteWalkTotal.reset();
+        deleteWalkMax.reset();
+    }
+
+    public Snapshot snapshot(){
+        return new Snapshot(this);
+    }
+
+    /* Register with the platform MBeanServer as trees:type=TreeMetrics,name=<name>.
+       Returns the ObjectName to unregister with.
+     */
+    public ObjectName register(String name){
+        try {
+            ObjectName objectName = new ObjectName("trees:type=TreeMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        }
+        catch (MalformedObjectNameException | InstanceAlreadyExistsException
+               | MBeanRegistrationException | NotCompliantMBeanException e){
+            throw new IllegalArgumentException("Cannot register tree metrics as " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName){
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (InstanceNotFoundException | MBeanRegistrationException e){
+            throw new IllegalArgumentException("Cannot unregister " + objectName, e);
+        }
+    }
+
+    // The values of a TreeMetrics at one point in time
+    public static final class Snapshot {
+        private final long comparisons;
+        private final long searches;
+        private final double averageSearchPath;
+        private final int maxSearchPath;
+        private final long[] rotations;
+        private final long deleteWalks;
+        private final double averageDeleteWalk;
+        private final int maxDeleteWalk;
+
+        private Snapshot(TreeMetrics metrics){
+            comparisons = metrics.getComparisons();
+            searches = metrics.getSearches();
+            averageSearchPath = metrics.getAverageSearchPath();
+            maxSearchPath = metrics.getMaxSearchPath();
+            rotations = new long[metrics.rotations.length];
+            for (int i = 0; i < rotations.length; i++){
+                rotations[i] = metrics.rotations[i].sum();
+            }
+            deleteWalks = metrics.getDeleteWalks();
+            averageDeleteWalk = metrics.getAverageDeleteWalk();
+            maxDeleteWalk = metrics.getMaxDeleteWalk();
+        }
+
+        public long getComparisons(){
+            return comparisons;
+        }
+
+        public long getSearches(){
+            return searches;
+        }
+
+        public double getAverageSearchPath(){
+            return averageSearchPath;
+        }
+
+        public int getMaxSearchPath(){
+            return maxSearchPath;
+        }
+
+        public long getRotations(Rotation rotation){
+            return rotations[rotation.ordinal()];
+        }
+
+        public long getDeleteWalks(){
+            return deleteWalks;
+        }
+
+        public double getAverageDeleteWalk(){
+            return averageDeleteWalk;
+        }
+
+        public int getMaxDeleteWalk(){
+            return maxDeleteWalk;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("comparisons=%d searches=%d avgSearchPath=%.2f maxSearchPath=%d " +
+                                 "rotations[LL=%d LR=%d RR=%d RL=%d] deleteWalks=%d avgDeleteWalk=%.2f " +
+                                 "maxDeleteWalk=%d",
+                                 comparisons, searches, averageSearchPath, maxSearchPath,
+                                 rotations[0], rotations[1], rotations[2], rotations[3],
+                                 deleteWalks, averageDeleteWalk, maxDeleteWalk);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package trees;
+
+/* What TreeMetrics.register exposes over JMX */
+public interface TreeMetricsMXBean {
+    long getComparisons();
+
+    long getSearches();
+
+    double getAverageSearchPath();
+
+    int getMaxSearchPath();
+
+    long getRotationsLL();
+
+    long getRotationsLR();
+
+    long getRotationsRR();
+
+    long getRotationsRL();
+
+    long getDeleteWalks();
+
+    double getAverageDeleteWalk();
+
+    int getMaxDeleteWalk();
+
+    void reset();
+}
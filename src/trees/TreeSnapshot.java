@@ -0,0 +1,268 @@
+package trees;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/* Read-only, memory-mapped view of a tree saved with BSTree.save.
+
+   File format (big-endian):
+
+       offset  0  magic    "DSAATREE"
+               8  version  int
+              12  layout   int    (LAYOUT_INORDER: keys in increasing order)
+              16  width    int    (KeyCodec.width() of every key)
+              20  reserved int
+              24  count    long
+              32  crc32    long   (of the key section)
+              40  keys     count * width bytes
+
+   Opening only reads and checks the header and maps the file, so it takes
+   the same time for any tree size. Lookups binary search the mapped keys
+   directly; pages are faulted in by the OS as they are touched. The key
+   checksum is only computed on demand by verify().
+ */
+public final class TreeSnapshot<E> {
+    public static final int VERSION = 1;
+    public static final int LAYOUT_INORDER = 0;
+
+    private static final byte[] MAGIC = {'D', 'S', 'A', 'A', 'T', 'R', 'E', 'E'};
+    private static final int HEADER_SIZE = 40;
+    private static final int COUNT_OFFSET = 24;
+
+    private final KeyCodec<E> codec;
+    private final int width;
+    private final long count;
+    private final long checksum;
+    // A MappedByteBuffer is int-indexed, so bigger files are mapped in
+    // regions of keysPerRegion keys
+    private final MappedByteBuffer[] regions;
+    private final long keysPerRegion;
+
+    private TreeSnapshot(KeyCodec<E> codec, long count, long checksum,
+                         MappedByteBuffer[] regions, long keysPerRegion){
+        this.codec = codec;
+        this.width = codec.width();
+        this.count = count;
+        this.checksum = checksum;
+        this.regions = regions;
+        this.keysPerRegion = keysPerRegion;
+    }
+
+    public static <E> TreeSnapshot<E> open(Path file, KeyCodec<E> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining()){
+                if (channel.read(header, header.position()) < 0){
+                    throw new IOException(file + " is too short to be a tree snapshot");
+                }
+            }
+            header.flip();
+
+            for (byte b : MAGIC){
+                if (header.get() != b){
+                    throw new IOException(file + " is not a tree snapshot");
+                }
+            }
+            int version = header.getInt();
+            int layout = header.getInt();
+            int width = header.getInt();
+            header.getInt(); // reserved
+            long count = header.getLong();
+            long checksum = header.getLong();
+
+            if (version != VERSION){
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            if (layout != LAYOUT_INORDER){
+                throw new IOException("Unsupported snapshot layout " + layout);
+            }
+            if (width != codec.width()){
+                throw new IOException("Snapshot has keys of " + width + " bytes, codec expects "
+                                      + codec.width());
+            }
+            if (count < 0 || channel.size() != HEADER_SIZE + count * width){
+                throw new IOException(file + " is truncated or corrupt");
+            }
+
+            long keysPerRegion = Integer.MAX_VALUE / width;
+            int regionCount = (int) ((count + keysPerRegion - 1) / keysPerRegion);
+            MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++){
+                long first = i * keysPerRegion;
+                long keys = Math.min(keysPerRegion, count - first);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                         HEADER_SIZE + first * width, keys * width);
+            }
+            // The mapping stays valid after the channel is closed
+            return new TreeSnapshot<>(codec, count, checksum, regions, keysPerRegion);
+        }
+    }
+
+    public long size(){
+        return count;
+    }
+
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    private int compareAt(long index, E key){
+        MappedByteBuffer region = regions[(int) (index / keysPerRegion)];
+        return codec.compare(region, (int) (index % keysPerRegion) * width, key);
+    }
+
+    // The key with the given position in increasing order
+    public E get(long index){
+        if (index < 0 || index >= count){
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + count);
+        }
+        MappedByteBuffer region = regions[(int) (index / keysPerRegion)];
+        return codec.read(region, (int) (index % keysPerRegion) * width);
+    }
+
+    // Position of the key in increasing order, or -1 if it is not there
+    public long indexOf(E key){
+        long lo = 0, hi = count - 1;
+        while (lo <= hi){
+            long mid = (lo + hi) >>> 1;
+            int cmpRes = compareAt(mid, key);
+            if (cmpRes == 0){
+                return mid;
+            }
+            else if (cmpRes > 0){
+                hi = mid - 1;
+            }
+            else {
+                lo = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(E key){
+        return indexOf(key) >= 0;
+    }
+
+    public void inorderTraverse(Function<E, Void> f){
+        for (long i = 0; i < count; i++){
+            f.apply(get(i));
+        }
+    }
+
+    // Recompute the checksum of the keys; this reads the whole file
+    public boolean verify(){
+        CRC32 crc = new CRC32();
+        for (MappedByteBuffer region : regions){
+            crc.update(region.duplicate());
+        }
+        return crc.getValue() == checksum;
+    }
+
+    /* Streams keys, which have to come in increasing order, into a
+       snapshot file. Used by BSTree.save.
+
+       The keys go to a temporary file next to the target. Only commit
+       fills in the count and checksum and moves it over the target, so
+       until then the old snapshot stays as it was; closing without a
+       commit deletes the temporary file.
+     */
+    static final class Writer<E> implements AutoCloseable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final Path file;
+        private final Path tmpFile;
+        private final FileChannel channel;
+        private final KeyCodec<E> codec;
+        private final ByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        private long count;
+        private boolean committed;
+
+        Writer(Path file, KeyCodec<E> codec) throws IOException {
+            this.file = file;
+            this.codec = codec;
+            this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, HEADER_SIZE + codec.width()))
+                                    .order(ByteOrder.BIG_ENDIAN);
+            Path dir = file.toAbsolutePath().getParent();
+            this.tmpFile = Files.createTempFile(dir, file.getFileName() + ".", ".tmp");
+            try {
+                this.channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE);
+            }
+            catch (IOException e){
+                Files.deleteIfExists(tmpFile);
+                throw e;
+            }
+
+            buffer.put(MAGIC)
+                  .putInt(VERSION)
+                  .putInt(LAYOUT_INORDER)
+                  .putInt(codec.width())
+                  .putInt(0)
+                  .putLong(0)   // count, filled in by close
+                  .putLong(0);  // checksum, filled in by close
+        }
+
+        // Throws UncheckedIOException, so it can be called from a traversal
+        void append(E key){
+            try {
+                if (buffer.remaining() < codec.width()){
+                    flush();
+                }
+                int offset = buffer.position();
+                codec.write(buffer, offset, key);
+                crc.update(buffer.array(), offset, codec.width());
+                buffer.position(offset + codec.width());
+                count++;
+            }
+            catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Finish the header and replace the target with the new snapshot
+        void commit() throws IOException {
+            flush();
+            ByteBuffer counts = ByteBuffer.allocate(HEADER_SIZE - COUNT_OFFSET)
+                                          .order(ByteOrder.BIG_ENDIAN);
+            counts.putLong(count).putLong(crc.getValue()).flip();
+            while (counts.hasRemaining()){
+                channel.write(counts, COUNT_OFFSET + counts.position());
+            }
+            channel.force(false);
+            channel.close();
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed){
+                return;
+            }
+            try {
+                channel.close();
+            }
+            finally {
+                Files.deleteIfExists(tmpFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package trees;
+
+import java.util.Comparator;
+
+/* Weak AVL tree (Haeupler, Sen and Tarjan, "Rank-Balanced Trees", 2015).
+   Every node has a rank; a null link has rank -1. The rank difference
+   between a node and each of its children is 1 or 2, and a leaf has
+   rank 0. Without deletes this is exactly an AVL tree (the rank is the
+   height - 1), so the height stays below 1.44 log2(n).
+
+   Deletes are where it differs from AVLTree: they are allowed to leave
+   2,2 nodes behind instead of restoring the heights, so a delete does
+   at most two rotations and O(1) rank changes amortized, while the AVL
+   delete may rotate at every level on the way up.
+ */
+public class WAVLTree<E> extends BSTree<E> {
+    @Override
+    public WAVLNode<E> getRoot(){
+        return (WAVLNode<E>) super.getRoot();
+    }
+
+    public WAVLTree(){
+        super();
+    }
+
+    public WAVLTree(Comparator<E> cmp){
+        super(cmp);
+    }
+
+    @Override
+    protected WAVLNode<E> createNode(E key){
+        return new WAVLNode<E>(key);
+    }
+
+    @Override
+    protected void initNode(Node<E> node){
+        ((WAVLNode<E>) node).rank = 0;
+    }
+
+    @Override
+    protected WAVLTree<E> createTree(){
+        return new WAVLTree<>(comparator());
+    }
+
+    // Bulk builds are balanced, so the AVL ranks are valid
+    @Override
+    protected void resetNode(Node<E> node){
+        WAVLNode<E> wavlNode = (WAVLNode<E>) node;
+        wavlNode.rank = Math.max(rank(wavlNode.getLeft()), rank(wavlNode.getRight())) + 1;
+    }
+
+    private static int rank(WAVLNode<?> node){
+        return node == null ? -1 : node.rank;
+    }
+
+    @Override
+    public boolean insert(E key){
+        WAVLNode<E> newNode = (WAVLNode<E>) obtainNode(key);
+        boolean success = doInsert(newNode);
+        if (success){
+            insertFixup(newNode);
+        }
+        else {
+            releaseNode(newNode);
+        }
+        return success;
+    }
+
+    // node may be a 0-child, i.e. have the same rank as its parent
+    private void insertFixup(WAVLNode<E> node){
+        WAVLNode<E> parent = node.getParent();
+        while (parent != null && parent.rank == node.rank){
+            WAVLNode<E> sibling = node.isLeftChildOf(parent) ? parent.getRight() : parent.getLeft();
+            if (parent.rank - rank(sibling) == 1){
+                // 0,1 node: promote it and go up
+                parent.rank++;
+                node = parent;
+                parent = node.getParent();
+                continue;
+            }
+
+            // 0,2 node: one or two rotations end the fix-up
+            if (node.isLeftChildOf(parent)){
+                WAVLNode<E> inner = node.getRight();
+                if (inner == null || node.rank - inner.rank == 2){
+                    RightRotate(parent);
+                    parent.rank--;
+                }
+                else {
+                    LeftRotate(node);
+                    RightRotate(parent);
+                    inner.rank++;
+                    node.rank--;
+                    parent.rank--;
+                }
+            }
+            else {
+                WAVLNode<E> inner = node.getLeft();
+                if (inner == null || node.rank - inner.rank == 2){
+                    LeftRotate(parent);
+                    parent.rank--;
+                }
+                else {
+                    RightRotate(node);
+                    LeftRotate(parent);
+                    inner.rank++;
+                    node.rank--;
+                    parent.rank--;
+                }
+            }
+            return;
+        }
+    }
+
+    @Override
+    public boolean delete(E key){
+        Node<E> nodeToDelete = find(key);
+        if (nodeToDelete == null){
+            return false; // node not found
+        }
+
+        WAVLNode<E> removed = (WAVLNode<E>) unlinkedBy(nodeToDelete);
+        WAVLNode<E> parent = removed.getParent();
+        WAVLNode<E> child = removed.getLeft() != null ? removed.getLeft() : removed.getRight();
+        doDelete(nodeToDelete, removed);
+        if (parent != null){
+            deleteFixup(child, parent);
+        }
+        releaseNode(removed);
+        return true;
+    }
+
+    /* node (possibly null) took the place of the removed node under parent,
+       so it may be a 3-child now, or parent may be a leaf of rank 1
+     */
+    private void deleteFixup(WAVLNode<E> node, WAVLNode<E> parent){
+        if (parent.getLeft() == null && parent.getRight() == null && parent.rank == 1){
+            // 2,2 leaf
+            parent.rank = 0;
+            node = parent;
+            parent = node.getParent();
+        }
+
+        while (parent != null && parent.rank - rank(node) == 3){
+            boolean nodeIsLeft = node == parent.getLeft();
+            WAVLNode<E> sibling = nodeIsLeft ? parent.getRight() : parent.getLeft();
+            if (parent.rank - sibling.rank == 2){
+                // 3,2 node: demote it and go up
+                parent.rank--;
+                node = parent;
+                parent = node.getParent();
+                continue;
+            }
+
+            WAVLNode<E> outer = nodeIsLeft ? sibling.getRight() : sibling.getLeft();
+            WAVLNode<E> inner = nodeIsLeft ? sibling.getLeft() : sibling.getRight();
+            if (sibling.rank - rank(outer) == 2 && sibling.rank - rank(inner) == 2){
+                // 3,1 node with a 2,2 sibling: demote both and go up
+                parent.rank--;
+                sibling.rank--;
+                node = parent;
+                parent = node.getParent();
+                continue;
+            }
+
+            // one or two rotations end the fix-up
+            if (sibling.rank - rank(outer) == 1){
+                if (nodeIsLeft){
+                    LeftRotate(parent);
+                }
+                else {
+                    RightRotate(parent);
+                }
+                sibling.rank++;
+                parent.rank--;
+                if (parent.getLeft() == null && parent.getRight() == null){
+                    parent.rank--; // would be a 2,2 leaf
+                }
+            }
+            else {
+                if (nodeIsLeft){
+                    RightRotate(sibling);
+                    LeftRotate(parent);
+                }
+                else {
+                    LeftRotate(sibling);
+                    RightRotate(parent);
+                }
+                inner.rank += 2;
+                sibling.rank--;
+                parent.rank -= 2;
+            }
+            return;
+        }
+    }
+
+    protected static class WAVLNode<E> extends BSTree.Node<E> {
+        private int rank;
+
+        public WAVLNode(E key){
+            super(key);
+        }
+
+        public int getRank(){
+            return rank;
+        }
+
+        @Override
+        public WAVLNode<E> getLeft(){
+            return (WAVLNode<E>) super.getLeft();
+        }
+
+        @Override
+        public WAVLNode<E> getRight(){
+            return (WAVLNode<E>) super.getRight();
+        }
+
+        @Override
+        public WAVLNode<E> getParent(){
+            return (WAVLNode<E>) super.getParent();
+        }
+    }
+}